@@ -7,6 +7,9 @@ import LoginPage from './components/LoginPage';
 import ProjectTimeline from './components/ProjectTimeline';
 import { projectService, userService, setUsername } from './services/api';
 import { websocketService } from './services/websocket';
+import { syncClock, observeServerTime } from './services/clock';
+
+const CLOCK_SYNC_INTERVAL_MS = 10 * 60 * 1000;
 
 function App() {
   const [projects, setProjects] = useState([]);
@@ -21,18 +24,21 @@ function App() {
     return !!localStorage.getItem('devClockUser');
   });
   const [searchTerm, setSearchTerm] = useState('');
-  const updateInterval = useRef(null);
+  const clockSyncInterval = useRef(null);
+  const syncStream = useRef(null);
+  const syncSequence = useRef(0);
   const searchInputRef = useRef(null);
 
   useEffect(() => {
     if (isAuthenticated && user) {
       initializeApp();
       setupWebSocket();
+      startClockSync();
     }
 
     return () => {
-      if (updateInterval.current) {
-        clearInterval(updateInterval.current);
+      if (clockSyncInterval.current) {
+        clearInterval(clockSyncInterval.current);
       }
       websocketService.disconnect();
     };
@@ -98,20 +104,72 @@ function App() {
     }
   };
 
+  const resyncProjects = async () => {
+    try {
+      const sync = await projectService.syncProjects();
+      observeServerTime(sync.serverTime);
+      // The list may come from another node than the WebSocket; its
+      // sequence only counts when it is from the stream being followed.
+      if (syncStream.current === null || syncStream.current === sync.stream) {
+        syncStream.current = sync.stream;
+        syncSequence.current = sync.sequence;
+      }
+      setProjects(sync.projects);
+    } catch (err) {
+      console.error('Failed to resync projects:', err);
+    }
+  };
+
+  const applyProjectChange = (event) => {
+    if (event.stream !== syncStream.current) {
+      // Another node, or the same one restarted: sequences start over, so
+      // follow the new stream from this event on a freshly loaded list.
+      syncStream.current = event.stream;
+      syncSequence.current = event.sequence;
+      resyncProjects();
+      return;
+    }
+    if (event.sequence <= syncSequence.current) {
+      return;
+    }
+    if (event.sequence !== syncSequence.current + 1) {
+      resyncProjects();
+      return;
+    }
+    syncSequence.current = event.sequence;
+
+    setProjects((current) => {
+      switch (event.type) {
+        case 'CREATED':
+          return [event.changes, ...current.filter(project => project.id !== event.projectId)];
+        case 'UPDATED':
+          return current.map(project =>
+            project.id === event.projectId ? { ...project, ...event.changes } : project
+          );
+        case 'DELETED':
+          return current.filter(project => project.id !== event.projectId);
+        default:
+          return current;
+      }
+    });
+  };
+
   const setupWebSocket = () => {
-    websocketService.connect(() => {
-      websocketService.subscribe('/topic/projects', (projects) => {
-        setProjects(projects);
+    websocketService.connect(user.username, () => {
+      websocketService.subscribe('/user/queue/project-changes', (events) => {
+        events.forEach(event => observeServerTime(event.serverTime));
+        events.forEach(applyProjectChange);
       });
+      resyncProjects();
     });
   };
 
-  const updateActiveProjects = async () => {
-    try {
-      await projectService.updateActiveProjects();
-    } catch (err) {
-      console.error('Failed to update active projects:', err);
-    }
+  // Timers are extrapolated locally from each project's last transition,
+  // so the only thing to refresh periodically is the clock offset.
+  const startClockSync = () => {
+    const sync = () => syncClock().catch(err => console.error('Failed to sync clock:', err));
+    sync();
+    clockSyncInterval.current = setInterval(sync, CLOCK_SYNC_INTERVAL_MS);
   };
 
   const handleCreateProject = () => {
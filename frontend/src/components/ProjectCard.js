@@ -23,7 +23,7 @@ const ProjectCard = ({ project, user, onDelete, onTimerAction }) => {
     const interval = setInterval(updateTimes, 1000);
 
     return () => clearInterval(interval);
-  }, [project.devTimeSeconds, project.waitTimeSeconds, project.currentState, project.lastStateChange]);
+  }, [project.devTimeMs, project.waitTimeMs, project.currentState, project.lastStateChange]);
 
   useEffect(() => {
     if (user?.role === 'ADMIN') {
@@ -21,6 +21,11 @@ export const projectService = {
     return response.data;
   },
 
+  syncProjects: async () => {
+    const response = await axios.get(`${API_BASE_URL}/api/projects/sync`);
+    return response.data;
+  },
+
   getProject: async (id) => {
     const response = await axios.get(`${API_BASE_URL}/api/projects/${id}`);
     return response.data;
@@ -53,16 +58,6 @@ export const projectService = {
     return response.data;
   },
 
-  updateActiveProjects: async () => {
-    const response = await axios.get(`${API_BASE_URL}/api/projects/update-active`);
-    return response.data;
-  },
-
-  getCurrentTimes: async () => {
-    const response = await axios.get(`${API_BASE_URL}/api/projects/current-times`);
-    return response.data;
-  },
-
   assignProject: async (projectId, username) => {
     const response = await axios.put(`${API_BASE_URL}/api/projects/${projectId}/assign`, {
       username: username
@@ -113,3 +108,10 @@ export const userService = {
     return response.data;
   }
 };
+
+export const systemService = {
+  getClock: async () => {
+    const response = await axios.get(`${API_BASE_URL}/api/system/clock`);
+    return response.data;
+  }
+};
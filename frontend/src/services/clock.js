@@ -0,0 +1,38 @@
+import { systemService } from './api';
+
+const SAMPLES = 3;
+
+let offsetMs = 0;
+
+// Server time estimated from the local clock and the last measured offset
+export const serverNow = () => Date.now() + offsetMs;
+
+// Keeps the sample with the shortest round trip, whose midpoint is the
+// closest estimate of when the server read its clock.
+export const syncClock = async () => {
+  let bestRoundTrip = Infinity;
+  let bestOffset = offsetMs;
+
+  for (let i = 0; i < SAMPLES; i++) {
+    const sentAt = Date.now();
+    const { epochMs } = await systemService.getClock();
+    const receivedAt = Date.now();
+    const roundTrip = receivedAt - sentAt;
+
+    if (roundTrip < bestRoundTrip) {
+      bestRoundTrip = roundTrip;
+      bestOffset = epochMs - (sentAt + receivedAt) / 2;
+    }
+  }
+
+  offsetMs = bestOffset;
+  return offsetMs;
+};
+
+// A message cannot arrive before the server sent it, so its timestamp is a
+// lower bound on the current server time.
+export const observeServerTime = (serverTime) => {
+  if (serverTime && serverTime - Date.now() > offsetMs) {
+    offsetMs = serverTime - Date.now();
+  }
+};
@@ -7,9 +7,10 @@ class WebSocketService {
     this.connected = false;
   }
 
-  connect(onConnected) {
+  connect(username, onConnected) {
     this.client = new Client({
       webSocketFactory: () => new SockJS('/ws'),
+      connectHeaders: { 'X-Username': username },
       debug: () => {},
       onConnect: () => {
         this.connected = true;
@@ -1,3 +1,5 @@
+import { serverNow } from '../services/clock';
+
 export const formatTime = (seconds) => {
   const hours = Math.floor(seconds / 3600);
   const minutes = Math.floor((seconds % 3600) / 60);
@@ -10,27 +12,22 @@ export const formatTime = (seconds) => {
 };
 
 export const calculateCurrentTime = (project) => {
-  if (!project.lastStateChange || project.currentState === 'STOPPED') {
-    return {
-      devTime: project.devTimeSeconds,
-      waitTime: project.waitTimeSeconds
-    };
-  }
-
-  const lastChange = new Date(project.lastStateChange);
-  const now = new Date();
-  const elapsedSeconds = Math.floor((now - lastChange) / 1000);
+  // Totals arrive in milliseconds; older servers only send whole seconds
+  let devMs = project.devTimeMs ?? project.devTimeSeconds * 1000;
+  let waitMs = project.waitTimeMs ?? project.waitTimeSeconds * 1000;
 
-  let devTime = project.devTimeSeconds;
-  let waitTime = project.waitTimeSeconds;
+  if (project.lastStateChange && project.currentState !== 'STOPPED') {
+    const lastChange = project.lastStateChangeEpochMs ?? new Date(project.lastStateChange).getTime();
+    const elapsedMs = Math.max(0, serverNow() - lastChange);
 
-  if (project.currentState === 'DEV_ACTIVE') {
-    devTime += elapsedSeconds;
-  } else if (project.currentState === 'WAIT_ACTIVE') {
-    waitTime += elapsedSeconds;
+    if (project.currentState === 'DEV_ACTIVE') {
+      devMs += elapsedMs;
+    } else if (project.currentState === 'WAIT_ACTIVE') {
+      waitMs += elapsedMs;
+    }
   }
 
-  return { devTime, waitTime };
+  return { devTime: Math.floor(devMs / 1000), waitTime: Math.floor(waitMs / 1000) };
 };
 
 export const getTimerStateColor = (state) => {
@@ -0,0 +1,49 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.User;
+import com.devclock.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code UserService.authenticateUser}, which runs on nearly every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthenticationBenchmark {
+
+    private BenchmarkApplication application;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start();
+        userService = application.bean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public User authenticate() {
+        return userService.authenticateUser(BenchmarkApplication.DEVELOPER);
+    }
+}
@@ -0,0 +1,102 @@
+package com.devclock.benchmark;
+
+import com.devclock.DevClockMonitoringApplication;
+import com.devclock.model.Project;
+import com.devclock.repository.ProjectRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Boots the real application against a fresh SQLite file in a temporary
+ * directory, with its own users.json, so benchmarks exercise the same
+ * beans, pools and pragmas as production.
+ */
+public class BenchmarkApplication implements AutoCloseable {
+
+    public static final String ADMIN = "admin";
+    public static final String DEVELOPER = "developer1";
+
+    private static final String USERS_JSON = "[" +
+        "{\"username\":\"admin\",\"role\":\"ADMIN\",\"displayName\":\"Admin\",\"description\":\"\"}," +
+        "{\"username\":\"developer1\",\"role\":\"DEVELOPER\",\"displayName\":\"Developer 1\",\"description\":\"\"}," +
+        "{\"username\":\"developer2\",\"role\":\"DEVELOPER\",\"displayName\":\"Developer 2\",\"description\":\"\"}" +
+        "]";
+
+    private final Path directory;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(Path directory, ConfigurableApplicationContext context) {
+        this.directory = directory;
+        this.context = context;
+    }
+
+    public static BenchmarkApplication start(String... extraProperties) throws IOException {
+        Path directory = Files.createTempDirectory("devclock-bench");
+        Path usersFile = directory.resolve("users.json");
+        Files.write(usersFile, USERS_JSON.getBytes(StandardCharsets.UTF_8));
+
+        // Passed as command line arguments so they override application.properties
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:sqlite:" + directory.resolve("bench.sqlite"));
+        args.add("--app.users.file.path=" + usersFile);
+        args.add("--app.timeline.archive.directory=" + directory.resolve("timeline-archive"));
+        args.add("--server.port=0");
+        args.add("--spring.devtools.restart.enabled=false");
+        args.add("--spring.main.banner-mode=off");
+        args.add("--logging.level.root=WARN");
+        args.add("--logging.level.com.devclock=WARN");
+        for (String property : extraProperties) {
+            args.add("--" + property);
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DevClockMonitoringApplication.class)
+            .run(args.toArray(new String[0]));
+        return new BenchmarkApplication(directory, context);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int port() {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    /**
+     * Inserts {@code count} projects: every third is assigned to
+     * {@link #DEVELOPER}, every tenth to everyone, the rest to nobody.
+     */
+    public List<Project> seedProjects(int count) {
+        List<Project> projects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Project project = new Project("Project " + i, "Benchmark project " + i);
+            if (i % 3 == 0) {
+                project.setAssignedUserUsername(DEVELOPER);
+            } else if (i % 10 == 1) {
+                project.setAssignedToAll(true);
+            }
+            projects.add(project);
+        }
+        TransactionTemplate transaction = new TransactionTemplate(bean(PlatformTransactionManager.class));
+        return transaction.execute(status -> bean(ProjectRepository.class).saveAll(projects));
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.devclock.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates developers working against a running instance. Each simulated
+ * user authenticates with {@code X-Username}, subscribes to its project
+ * changes over STOMP, polls {@code /api/projects/current-times} with the last
+ * ETag it saw, and toggles timers on the projects it can see at random
+ * (Poisson) intervals.
+ * <p>
+ * Broadcast lag is measured from a change's {@code lastStateChangeEpochMs}
+ * to the moment the frame arrives, so it is only meaningful when the
+ * generator and the server share a clock.
+ * <p>
+ * Options, all {@code --name=value}: {@code url} (http://localhost:8080),
+ * {@code users} (20), {@code usernames} (every developer in users.json),
+ * {@code duration-seconds} (60), {@code toggles-per-minute} per user (6),
+ * {@code poll-interval-ms} (1000), {@code projects} to create when none are
+ * visible (20), {@code admin} (admin).
+ */
+public class LoadGenerator {
+
+    private static final String CHANGES_DESTINATION = "/user/queue/project-changes";
+    private static final String[] TOGGLES = {"toggle-dev", "toggle-wait", "stop"};
+
+    private final String baseUrl;
+    private final int userCount;
+    private final List<String> usernames;
+    private final long durationSeconds;
+    private final double togglesPerMinute;
+    private final long pollIntervalMs;
+    private final int projectsToCreate;
+    private final String admin;
+
+    private final RestTemplate rest;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    private final Histogram broadcastLag = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    private static class Operation {
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    private static class SimulatedUser {
+        private final String username;
+        private volatile List<Long> projectIds = Collections.emptyList();
+        private volatile String etag;
+        private StompSession session;
+
+        private SimulatedUser(String username) {
+            this.username = username;
+        }
+    }
+
+    public LoadGenerator(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        this.userCount = Integer.parseInt(options.getOrDefault("users", "20"));
+        this.durationSeconds = Long.parseLong(options.getOrDefault("duration-seconds", "60"));
+        this.togglesPerMinute = Double.parseDouble(options.getOrDefault("toggles-per-minute", "6"));
+        this.pollIntervalMs = Long.parseLong(options.getOrDefault("poll-interval-ms", "1000"));
+        this.projectsToCreate = Integer.parseInt(options.getOrDefault("projects", "20"));
+        this.admin = options.getOrDefault("admin", "admin");
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(5000);
+        requestFactory.setReadTimeout(30000);
+        this.rest = new RestTemplate(requestFactory);
+
+        String names = options.get("usernames");
+        this.usernames = names != null ? splitNames(names) : availableDevelopers();
+
+        for (String name : new String[] {"current-times", "toggle-dev", "toggle-wait", "stop", "projects"}) {
+            operations.put(name, new Operation());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Without a logback.xml on the classpath the STOMP client logs every frame
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+            .setLevel(Level.WARN);
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        ensureProjects();
+
+        SockJsClient sockJs = new SockJsClient(Collections.singletonList(
+            new WebSocketTransport(new StandardWebSocketClient())));
+        WebSocketStompClient stompClient = new WebSocketStompClient(sockJs);
+
+        List<SimulatedUser> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            SimulatedUser user = new SimulatedUser(usernames.get(i % usernames.size()));
+            refreshProjects(user);
+            connect(stompClient, user);
+            users.add(user);
+        }
+        System.out.printf("%d users connected as %s, running for %d s%n", users.size(), usernames, durationSeconds);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        long start = System.nanoTime();
+        for (SimulatedUser user : users) {
+            long offset = ThreadLocalRandom.current().nextLong(pollIntervalMs);
+            scheduler.scheduleAtFixedRate(() -> poll(user), offset, pollIntervalMs, TimeUnit.MILLISECONDS);
+            scheduler.scheduleAtFixedRate(() -> refreshProjects(user), 10, 10, TimeUnit.SECONDS);
+            scheduleToggle(scheduler, user);
+        }
+
+        for (long elapsed = 0; elapsed < durationSeconds; elapsed += 10) {
+            TimeUnit.SECONDS.sleep(Math.min(10, durationSeconds - elapsed));
+            System.out.printf("  %3d s: %d requests, %d frames%n", Math.min(elapsed + 10, durationSeconds),
+                totalRequests(), framesReceived.get());
+        }
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        report((System.nanoTime() - start) / 1e9);
+
+        for (SimulatedUser user : users) {
+            if (user.session != null && user.session.isConnected()) {
+                user.session.disconnect();
+            }
+        }
+    }
+
+    private void ensureProjects() {
+        List<Long> existing = projectIds(get("/api/projects", admin, "projects"));
+        for (int i = existing.size(); i < projectsToCreate; i++) {
+            Map<String, String> body = new LinkedHashMap<>();
+            body.put("name", "Load test project " + System.currentTimeMillis() + "-" + i);
+            body.put("description", "Created by LoadGenerator");
+            JsonNode created = rest.exchange(baseUrl + "/api/projects", HttpMethod.POST,
+                new HttpEntity<>(body, headers(admin)), JsonNode.class).getBody();
+            rest.exchange(baseUrl + "/api/projects/" + created.get("id").asLong() + "/assign-all",
+                HttpMethod.PUT, new HttpEntity<>(headers(admin)), JsonNode.class);
+        }
+    }
+
+    private void connect(WebSocketStompClient stompClient, SimulatedUser user) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("X-Username", user.username);
+        user.session = stompClient.connect(baseUrl + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+            new StompSessionHandlerAdapter() {
+                @Override
+                public void handleTransportError(StompSession session, Throwable exception) {
+                    System.err.println(user.username + ": transport error " + exception);
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+        user.session.subscribe(CHANGES_DESTINATION, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                recordFrame((byte[]) payload);
+            }
+        });
+    }
+
+    private void recordFrame(byte[] payload) {
+        long receivedAt = System.currentTimeMillis();
+        framesReceived.incrementAndGet();
+        try {
+            for (JsonNode event : objectMapper.readTree(payload)) {
+                eventsReceived.incrementAndGet();
+                // CREATED events replay old state to new subscribers; only
+                // updates say when the change they carry happened
+                if (!"UPDATED".equals(event.path("type").asText())) {
+                    continue;
+                }
+                JsonNode changedAt = event.path("changes").path("lastStateChangeEpochMs");
+                if (changedAt.isNumber()) {
+                    broadcastLag.recordValue(Math.max(0, receivedAt - changedAt.asLong()) * 1000);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Unreadable frame: " + e);
+        }
+    }
+
+    private void poll(SimulatedUser user) {
+        HttpHeaders headers = headers(user.username);
+        if (user.etag != null) {
+            headers.setIfNoneMatch(user.etag);
+        }
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<byte[]> response = rest.exchange(baseUrl + "/api/projects/current-times",
+                HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+            operations.get("current-times").latency.recordValue(micros(start));
+            if (response.getStatusCodeValue() == 304) {
+                notModified.incrementAndGet();
+            }
+            user.etag = response.getHeaders().getETag();
+        } catch (RuntimeException e) {
+            operations.get("current-times").errors.incrementAndGet();
+        }
+    }
+
+    private void scheduleToggle(ScheduledExecutorService scheduler, SimulatedUser user) {
+        if (togglesPerMinute <= 0) {
+            return;
+        }
+        double meanDelayMs = 60000.0 / togglesPerMinute;
+        long delay = (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanDelayMs);
+        scheduler.schedule(() -> {
+            toggle(user);
+            scheduleToggle(scheduler, user);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void toggle(SimulatedUser user) {
+        List<Long> projectIds = user.projectIds;
+        if (projectIds.isEmpty()) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long projectId = projectIds.get(random.nextInt(projectIds.size()));
+        String action = TOGGLES[random.nextInt(TOGGLES.length)];
+
+        Operation operation = operations.get(action);
+        long start = System.nanoTime();
+        try {
+            rest.exchange(baseUrl + "/api/projects/" + projectId + "/" + action, HttpMethod.POST,
+                new HttpEntity<>(headers(user.username)), byte[].class);
+            operation.latency.recordValue(micros(start));
+        } catch (RuntimeException e) {
+            operation.errors.incrementAndGet();
+        }
+    }
+
+    private void refreshProjects(SimulatedUser user) {
+        JsonNode projects = get("/api/projects", user.username, "projects");
+        if (projects != null) {
+            user.projectIds = projectIds(projects);
+        }
+    }
+
+    private JsonNode get(String path, String username, String operationName) {
+        Operation operation = operations.get(operationName);
+        long start = System.nanoTime();
+        try {
+            JsonNode body = rest.exchange(baseUrl + path, HttpMethod.GET,
+                new HttpEntity<>(headers(username)), JsonNode.class).getBody();
+            if (operation != null) {
+                operation.latency.recordValue(micros(start));
+            }
+            return body;
+        } catch (HttpStatusCodeException e) {
+            if (operation != null) {
+                operation.errors.incrementAndGet();
+            }
+            return null;
+        }
+    }
+
+    private List<String> availableDevelopers() {
+        JsonNode users = rest.getForObject(baseUrl + "/api/users/available", JsonNode.class);
+        List<String> names = new ArrayList<>();
+        for (JsonNode user : users) {
+            if ("DEVELOPER".equals(user.path("role").asText())) {
+                names.add(user.path("username").asText());
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalStateException("users.json lists no developers; pass --usernames");
+        }
+        return names;
+    }
+
+    private static List<String> splitNames(String names) {
+        List<String> result = new ArrayList<>();
+        for (String name : names.split(",")) {
+            if (!name.trim().isEmpty()) {
+                result.add(name.trim());
+            }
+        }
+        return result;
+    }
+
+    private static List<Long> projectIds(JsonNode projects) {
+        List<Long> ids = new ArrayList<>();
+        if (projects != null) {
+            for (JsonNode project : projects) {
+                ids.add(project.get("id").asLong());
+            }
+        }
+        return ids;
+    }
+
+    private static HttpHeaders headers(String username) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Username", username);
+        return headers;
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private long totalRequests() {
+        long total = 0;
+        for (Operation operation : operations.values()) {
+            total += operation.latency.getTotalCount() + operation.errors.get();
+        }
+        return total;
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%nRan %.1f s with %d users%n%n", seconds, userCount);
+        System.out.printf("%-16s %9s %9s %7s %9s %9s %9s %9s%n",
+            "operation", "count", "per sec", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            Histogram latency = entry.getValue().latency;
+            System.out.printf("%-16s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f%n",
+                entry.getKey(), latency.getTotalCount(), latency.getTotalCount() / seconds,
+                entry.getValue().errors.get(),
+                millis(latency, 50), millis(latency, 99), millis(latency, 99.9), latency.getMaxValue() / 1000.0);
+        }
+        System.out.printf("%ncurrent-times answered 304: %d%n", notModified.get());
+        System.out.printf("frames received: %d (%.1f/s), events: %d%n",
+            framesReceived.get(), framesReceived.get() / seconds, eventsReceived.get());
+        System.out.printf("broadcast lag ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n",
+            millis(broadcastLag, 50), millis(broadcastLag, 99), millis(broadcastLag, 99.9),
+            broadcastLag.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+import com.devclock.model.User;
+import com.devclock.service.ProjectService;
+import com.devclock.service.ProjectSnapshotCache;
+import com.devclock.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project list reads at different table sizes: the admin and developer
+ * views of {@code getProjectsForUser}, and the current-times payload
+ * served from the rendered snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectQueryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int projectCount;
+
+    private BenchmarkApplication application;
+    private ProjectService projectService;
+    private User admin;
+    private User developer;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start();
+        projectService = application.bean(ProjectService.class);
+        UserService userService = application.bean(UserService.class);
+        admin = userService.authenticateUser(BenchmarkApplication.ADMIN);
+        developer = userService.authenticateUser(BenchmarkApplication.DEVELOPER);
+
+        List<Project> projects = application.seedProjects(projectCount);
+        // Keep a tenth of the timers running so current times have work to do
+        for (int i = 0; i < projects.size(); i += 10) {
+            projectService.startDevTimer(projects.get(i).getId(), BenchmarkApplication.DEVELOPER);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public List<ProjectView> projectsForAdmin() {
+        return projectService.getProjectsForUser(admin);
+    }
+
+    @Benchmark
+    public List<ProjectView> projectsForDeveloper() {
+        return projectService.getProjectsForUser(developer);
+    }
+
+    @Benchmark
+    public byte[] currentTimes() {
+        ProjectSnapshotCache.Snapshot snapshot = projectService.getProjectSnapshot();
+        return snapshot.jsonAt(System.currentTimeMillis());
+    }
+}
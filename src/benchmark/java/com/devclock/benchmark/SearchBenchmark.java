@@ -0,0 +1,88 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.Project;
+import com.devclock.model.User;
+import com.devclock.service.ProjectSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project search against the in-memory index alone, for a first page of
+ * results. The cost follows the shortest posting list among the query
+ * words, not the catalog: a one-letter query matches most projects and is
+ * there for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+        "billing", "migration", "portal", "mobile", "android", "checkout", "analytics", "gateway",
+        "invoice", "customer", "onboarding", "dashboard", "warehouse", "payroll", "reporting", "search",
+        "identity", "catalog", "shipping", "pricing", "loyalty", "notification", "scheduler", "archive"
+    };
+
+    @Param({"1000", "10000", "50000"})
+    public int projectCount;
+
+    private ProjectSearchIndex index;
+    private User admin;
+    private User developer;
+
+    @Setup
+    public void setUp() {
+        index = new ProjectSearchIndex(null, new SimpleMeterRegistry());
+        admin = new User("admin", User.Role.ADMIN);
+        developer = new User(BenchmarkApplication.DEVELOPER, User.Role.DEVELOPER);
+
+        Random random = new Random(42);
+        for (int i = 0; i < projectCount; i++) {
+            Project project = new Project(
+                word(random) + " " + word(random) + " " + i,
+                "Work on the " + word(random) + " and " + word(random) + " for client " + (i % 500));
+            project.setId((long) i + 1);
+            if (i % 3 == 0) {
+                project.setAssignedUserUsername(BenchmarkApplication.DEVELOPER);
+            } else if (i % 10 == 1) {
+                project.setAssignedToAll(true);
+            }
+            index.put(project);
+        }
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    @Benchmark
+    public Object selectivePrefix() {
+        return index.search("bill migr 42", admin, 0, 20);
+    }
+
+    @Benchmark
+    public Object wholeWordAsDeveloper() {
+        return index.search("checkout dashboard", developer, 0, 20);
+    }
+
+    @Benchmark
+    public Object singleLetter() {
+        return index.search("p", admin, 0, 20);
+    }
+}
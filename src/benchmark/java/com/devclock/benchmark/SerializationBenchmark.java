@@ -0,0 +1,80 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectChangeEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of what goes over the wire: the full project list
+ * (the sync and current-times payload, and what the old
+ * {@code /topic/projects} broadcast carried) and a coalesced
+ * project-changes frame whose change payloads were rendered beforehand, as
+ * the publisher does once per batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int projectCount;
+
+    private ObjectMapper objectMapper;
+    private List<Project> projects;
+    private List<ProjectChangeEvent> changes;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        LocalDateTime now = LocalDateTime.now();
+        projects = new ArrayList<>(projectCount);
+        changes = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            Project project = new Project("Project " + i, "Benchmark project " + i);
+            project.setId((long) i);
+            project.setAssignedUserUsername(i % 3 == 0 ? BenchmarkApplication.DEVELOPER : null);
+            project.applyTimerState(Project.TimerState.DEV_ACTIVE, now, i * 60_000L, i * 30_000L);
+            projects.add(project);
+
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("currentState", Project.TimerState.DEV_ACTIVE);
+            delta.put("lastStateChange", now);
+            delta.put("updatedAt", now);
+            changes.add(new ProjectChangeEvent(ProjectChangeEvent.Type.UPDATED, "benchmark", i + 1, (long) i,
+                objectMapper.writeValueAsString(delta)));
+        }
+    }
+
+    @Benchmark
+    public byte[] projectList() throws Exception {
+        return objectMapper.writeValueAsBytes(projects);
+    }
+
+    @Benchmark
+    public byte[] changeFrame() throws Exception {
+        return objectMapper.writeValueAsBytes(changes);
+    }
+}
@@ -0,0 +1,339 @@
+package com.devclock.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the platform-thread and virtual-thread execution modes
+ * ({@code app.threads.virtual}) at high connection counts. For every mode and
+ * connection count a fresh server JVM is started (see {@link Server}) so its
+ * threads and memory can be measured on their own; this process runs the
+ * clients, each a thread holding one keep-alive connection and sending
+ * requests back to back. Most requests page a project timeline, which waits
+ * on the SQLite reader pool; the rest toggle timers, which wait on the
+ * single writer.
+ * <p>
+ * Options, all {@code --name=value}: {@code connections} (200,1000,4000),
+ * {@code modes} (platform,virtual), {@code duration-seconds} (20),
+ * {@code warmup-seconds} (5), {@code projects} (100), {@code write-percent}
+ * (10), {@code server-heap} (512m). The virtual mode is skipped when the
+ * runtime has no virtual threads. Server logs go to
+ * {@code devclock-threads-<mode>-<connections>.log} in the temp directory.
+ */
+public class ThreadModeBenchmark {
+
+    private static final String[] TOGGLES = {"toggle-dev", "toggle-wait", "stop"};
+
+    private final List<Integer> connectionCounts = new ArrayList<>();
+    private final List<String> modes = new ArrayList<>();
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final int projects;
+    private final int writePercent;
+    private final String serverHeap;
+
+    private static class Result {
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        private final AtomicLong errors = new AtomicLong();
+        private String mode;
+        private int connections;
+        private double seconds;
+        private long peakThreads;
+        private long peakHeapBytes;
+        private long peakRssBytes;
+    }
+
+    public ThreadModeBenchmark(Map<String, String> options) {
+        for (String count : options.getOrDefault("connections", "200,1000,4000").split(",")) {
+            connectionCounts.add(Integer.parseInt(count.trim()));
+        }
+        for (String mode : options.getOrDefault("modes", "platform,virtual").split(",")) {
+            modes.add(mode.trim());
+        }
+        this.durationSeconds = Long.parseLong(options.getOrDefault("duration-seconds", "20"));
+        this.warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "5"));
+        this.projects = Integer.parseInt(options.getOrDefault("projects", "100"));
+        this.writePercent = Integer.parseInt(options.getOrDefault("write-percent", "10"));
+        this.serverHeap = options.getOrDefault("server-heap", "512m");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new ThreadModeBenchmark(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        int maxConnections = 0;
+        for (int connections : connectionCounts) {
+            maxConnections = Math.max(maxConnections, connections);
+        }
+        // The JDK keeps only five idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            if ("virtual".equals(mode) && !hasVirtualThreads()) {
+                System.out.printf("Skipping virtual mode: Java %s has no virtual threads%n",
+                    System.getProperty("java.version"));
+                continue;
+            }
+            for (int connections : connectionCounts) {
+                System.out.printf("%s threads, %d connections...%n", mode, connections);
+                results.add(runOnce(mode, connections));
+            }
+        }
+        printReport(results);
+    }
+
+    private Result runOnce(String mode, int connections) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + serverHeap);
+        // Devtools would otherwise relaunch Server.main with Spring's arguments
+        command.add("-Dspring.devtools.restart.enabled=false");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Server.class.getName());
+        command.add("app.threads.virtual=" + "virtual".equals(mode));
+        command.add("server.tomcat.max-connections=" + (connections + 100));
+        command.add(String.valueOf(projects));
+        Path log = Paths.get(System.getProperty("java.io.tmpdir"), "devclock-threads-" + mode + "-" + connections + ".log");
+        Process process = new ProcessBuilder(command).redirectError(log.toFile()).start();
+        BufferedReader serverOut = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        Writer serverIn = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+
+        try {
+            String ready = awaitLine(serverOut, "READY ", log);
+            String baseUrl = "http://localhost:" + ready.substring("READY ".length()).trim();
+
+            Result result = new Result();
+            result.mode = mode;
+            result.connections = connections;
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+            List<Thread> clients = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                // Small stacks so thousands of client threads fit next to the server
+                Thread client = new Thread(null, () -> drive(baseUrl, measureFrom, end, result),
+                    "client-" + i, 256 * 1024);
+                client.setDaemon(true);
+                clients.add(client);
+                client.start();
+            }
+
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureFrom - System.nanoTime()));
+            serverIn.write("RESET\n");
+            serverIn.flush();
+            for (Thread client : clients) {
+                client.join();
+            }
+            result.seconds = (System.nanoTime() - measureFrom) / 1e9;
+
+            serverIn.write("STATS\n");
+            serverIn.flush();
+            String[] stats = awaitLine(serverOut, "STATS ", log).split(" ");
+            result.peakThreads = Long.parseLong(stats[1]);
+            result.peakHeapBytes = Long.parseLong(stats[2]);
+            result.peakRssBytes = Long.parseLong(stats[3]);
+            return result;
+        } finally {
+            serverIn.close();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void drive(String baseUrl, long measureFrom, long end, Result result) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long projectId = 1 + random.nextInt(projects);
+            boolean ok;
+            if (random.nextInt(100) < writePercent) {
+                String toggle = TOGGLES[random.nextInt(TOGGLES.length)];
+                ok = request("POST", baseUrl + "/api/projects/" + projectId + "/" + toggle,
+                    BenchmarkApplication.DEVELOPER);
+            } else {
+                ok = request("GET", baseUrl + "/api/projects/" + projectId + "/timeline?limit=50",
+                    BenchmarkApplication.ADMIN);
+            }
+            if (now >= measureFrom) {
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - now);
+                result.latency.recordValue(Math.min(micros, result.latency.getHighestTrackableValue()));
+                if (!ok) {
+                    result.errors.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static boolean request(String method, String url, String username) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("X-Username", username);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(60000);
+            int status = connection.getResponseCode();
+            // Read to the end so the connection goes back to the keep-alive cache
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String awaitLine(BufferedReader reader, String prefix, Path log) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new IOException("Server exited before printing " + prefix.trim() + ", see " + log);
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static void printReport(List<Result> results) {
+        System.out.printf("%n%-9s %11s %9s %7s %9s %9s %9s %9s %11s %11s%n",
+            "mode", "connections", "req/s", "errors", "p50 ms", "p99 ms", "max ms", "threads", "heap MB", "rss MB");
+        for (Result result : results) {
+            Histogram latency = result.latency;
+            System.out.printf("%-9s %11d %9.1f %7d %9.2f %9.2f %9.2f %9d %11.1f %11s%n",
+                result.mode, result.connections, latency.getTotalCount() / result.seconds, result.errors.get(),
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMaxValue() / 1000.0, result.peakThreads, result.peakHeapBytes / 1048576.0,
+                result.peakRssBytes > 0 ? String.format("%.1f", result.peakRssBytes / 1048576.0) : "n/a");
+        }
+        System.out.println();
+        System.out.println("threads (platform threads only), heap and rss are the server JVM's peaks"
+            + " during the measured interval");
+    }
+
+    /**
+     * The server side of one run: boots the application with the given
+     * properties and projects, prints {@code READY <port>}, then answers
+     * {@code RESET} and {@code STATS} on stdin with the peak thread count,
+     * heap use and resident set size sampled since the last reset. Exits
+     * when stdin is closed.
+     */
+    public static class Server {
+
+        private static volatile long peakThreads;
+        private static volatile long peakHeap;
+        private static volatile long peakRss;
+
+        public static void main(String[] args) throws Exception {
+            String[] properties = new String[args.length - 1];
+            System.arraycopy(args, 0, properties, 0, properties.length);
+            int projects = Integer.parseInt(args[args.length - 1]);
+
+            // Spring Boot logs to stdout, which carries the protocol
+            PrintStream protocol = System.out;
+            System.setOut(System.err);
+
+            try (BenchmarkApplication application = BenchmarkApplication.start(properties)) {
+                application.seedProjects(projects);
+
+                Thread sampler = new Thread(Server::sample, "stats-sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+
+                protocol.println("READY " + application.port());
+                protocol.flush();
+                BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                String command;
+                while ((command = commands.readLine()) != null) {
+                    if ("RESET".equals(command)) {
+                        peakThreads = 0;
+                        peakHeap = 0;
+                        peakRss = 0;
+                    } else if ("STATS".equals(command)) {
+                        protocol.println("STATS " + peakThreads + " " + peakHeap + " " + peakRss);
+                        protocol.flush();
+                    }
+                }
+            }
+            System.exit(0);
+        }
+
+        private static void sample() {
+            while (true) {
+                peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+                peakHeap = Math.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+                peakRss = Math.max(peakRss, residentSetSize());
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // Linux only; elsewhere the report shows n/a
+        private static long residentSetSize() {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // fall through
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.Project;
+import com.devclock.model.TimelineEntry;
+import com.devclock.service.TimelineService;
+import com.devclock.service.TimelineWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline reads for a project with a given number of entries: the full
+ * streamed response, and the first and last keyset pages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimelineBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"100", "1000", "10000"})
+    public int entryCount;
+
+    private BenchmarkApplication application;
+    private TimelineService timelineService;
+    private TimelineService.Query firstPage;
+    private TimelineService.Query lastPage;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start();
+        timelineService = application.bean(TimelineService.class);
+        TimelineWriter timelineWriter = application.bean(TimelineWriter.class);
+
+        Project project = application.seedProjects(1).get(0);
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+        for (int i = 0; i < entryCount; i++) {
+            TimelineEntry entry = new TimelineEntry(null, i % 2 == 0 ? "START_DEV" : "STOP_DEV",
+                start.plusSeconds(i * 60L), "Benchmark entry " + i, BenchmarkApplication.DEVELOPER);
+            entry.setProjectId(project.getId());
+            timelineWriter.append(entry);
+        }
+        timelineWriter.flush().get();
+
+        firstPage = new TimelineService.Query(project.getId(), null, null, null);
+        String cursor = null;
+        TimelineService.Page page;
+        do {
+            lastPage = new TimelineService.Query(project.getId(), cursor, null, null);
+            page = timelineService.page(lastPage, PAGE_SIZE);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole blackhole) throws Exception {
+        timelineService.stream(firstPage).writeTo(new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+
+    @Benchmark
+    public TimelineService.Page firstPage() {
+        return timelineService.page(firstPage, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public TimelineService.Page lastPage() {
+        return timelineService.page(lastPage, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,77 @@
+package com.devclock.benchmark;
+
+import com.devclock.model.Project;
+import com.devclock.service.ProjectService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ProjectService.toggleTimer} on one project from a single thread, and
+ * on one shared project from several threads at once.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    private static final Project.TimerState[] STATES = {
+        Project.TimerState.DEV_ACTIVE, Project.TimerState.WAIT_ACTIVE, Project.TimerState.STOPPED
+    };
+
+    private BenchmarkApplication application;
+    private ProjectService projectService;
+    private Long projectId;
+
+    @State(Scope.Thread)
+    public static class Cycle {
+        private int next;
+
+        Project.TimerState nextState() {
+            Project.TimerState state = STATES[next];
+            next = (next + 1) % STATES.length;
+            return state;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        application = BenchmarkApplication.start();
+        projectService = application.bean(ProjectService.class);
+        List<Project> projects = application.seedProjects(1);
+        projectId = projects.get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        application.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Project toggleSingle(Cycle cycle) {
+        return projectService.toggleTimer(projectId, cycle.nextState(), BenchmarkApplication.DEVELOPER);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Project toggleContended(Cycle cycle) {
+        return projectService.toggleTimer(projectId, cycle.nextState(), BenchmarkApplication.DEVELOPER);
+    }
+}
@@ -0,0 +1,33 @@
+package com.devclock.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections requested inside read-only transactions to the reader
+ * pool and everything else to the writer. Must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so the target is chosen after the transaction's read-only flag is set.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String WRITER = "writer";
+    private static final String READER = "reader";
+
+    public ReadWriteRoutingDataSource(DataSource writer, DataSource reader) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(WRITER, writer);
+        targets.put(READER, reader);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(writer);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READER : WRITER;
+    }
+}
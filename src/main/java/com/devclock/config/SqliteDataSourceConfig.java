@@ -0,0 +1,90 @@
+package com.devclock.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.PlatformTransactionManagerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.sqlite.SQLiteConfig;
+
+import javax.sql.DataSource;
+
+/**
+ * SQLite persistence mode: WAL journal, tuned pragmas, a single writer
+ * connection that every write transaction shares, and a separate pool of
+ * read-only connections for read-only transactions. In WAL mode readers
+ * never wait on the writer, and funnelling writes through one connection
+ * keeps them from failing with "database is locked".
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sqlite.wal.enabled", havingValue = "true")
+public class SqliteDataSourceConfig {
+
+    @Value("${app.sqlite.busy-timeout-ms:5000}")
+    private int busyTimeoutMs;
+
+    @Value("${app.sqlite.cache-size-kb:16384}")
+    private int cacheSizeKb;
+
+    @Value("${app.sqlite.synchronous:NORMAL}")
+    private SQLiteConfig.SynchronousMode synchronous;
+
+    @Value("${app.sqlite.read-pool-size:4}")
+    private int readPoolSize;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("sqliteWriterDataSource") HikariDataSource writer,
+                                 @Qualifier("sqliteReaderDataSource") HikariDataSource reader) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(writer, reader);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // The pools are beans of their own so Boot's pool metrics pick them up
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteWriterDataSource(DataSourceProperties properties) {
+        return pool(properties, "sqlite-writer", 1, false);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteReaderDataSource(DataSourceProperties properties) {
+        return pool(properties, "sqlite-reader", readPoolSize, true);
+    }
+
+    // Without this, SUPPORTS and NOT_SUPPORTED scopes bind an EntityManager
+    // whose connection is picked before any inner read-only flag is visible,
+    // so it lands on the writer and is held until the scope ends.
+    @Bean
+    public PlatformTransactionManagerCustomizer<AbstractPlatformTransactionManager> actualTransactionSynchronization() {
+        return transactionManager -> transactionManager.setTransactionSynchronization(
+            AbstractPlatformTransactionManager.SYNCHRONIZATION_ON_ACTUAL_TRANSACTION);
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String name, int size, boolean readOnly) {
+        SQLiteConfig sqlite = new SQLiteConfig();
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        sqlite.setSynchronous(synchronous);
+        sqlite.setBusyTimeout(busyTimeoutMs);
+        // A negative cache_size is in KiB rather than pages
+        sqlite.setCacheSize(-cacheSizeKb);
+        sqlite.setReadOnly(readOnly);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(properties.determineUrl());
+        config.setDriverClassName(properties.determineDriverClassName());
+        config.setDataSourceProperties(sqlite.toProperties());
+        config.setMaximumPoolSize(size);
+        config.setMinimumIdle(size);
+        config.setReadOnly(readOnly);
+        return new HikariDataSource(config);
+    }
+}
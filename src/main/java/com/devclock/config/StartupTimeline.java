@@ -0,0 +1,187 @@
+package com.devclock.config;
+
+import com.devclock.model.StartupReport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ConfigurableBootstrapContext;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each startup phase from JVM start until the application reports
+ * ready, and the first request after that, for {@code GET /api/system/startup},
+ * the {@code devclock.startup} gauges and one log line per start.
+ * <p>
+ * Registered in {@code META-INF/spring.factories}, so it also sees the time
+ * before the context exists. The context phases come from the init
+ * callbacks of the beans that do the heavy lifting; everything else in the
+ * refresh, including starting Tomcat, is counted as {@code otherBeans}.
+ */
+public class StartupTimeline implements SpringApplicationRunListener, Ordered {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeline.class);
+
+    private static final int SLOWEST_BEANS = 5;
+
+    // Bean name -> phase, in startup order
+    private static final Map<String, String> BEAN_PHASES = new LinkedHashMap<>();
+
+    static {
+        BEAN_PHASES.put("flywayInitializer", "schemaMigration");
+        BEAN_PHASES.put("entityManagerFactory", "hibernate");
+        BEAN_PHASES.put("userDirectory", "userDirectory");
+        BEAN_PHASES.put("timerLedger", "timerLedger");
+        BEAN_PHASES.put("timerEngine", "timers");
+    }
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final ConcurrentMap<String, Long> initStarts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> initNanos = new ConcurrentHashMap<>();
+
+    private long startingMillis;
+    private long contextPreparedMillis;
+    private long startedMillis;
+    private volatile StartupReport report;
+
+    public StartupTimeline(SpringApplication application, String[] args) {
+    }
+
+    // After the listener that publishes the readiness state
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public void starting(ConfigurableBootstrapContext bootstrapContext) {
+        startingMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public void contextPrepared(ConfigurableApplicationContext context) {
+        contextPreparedMillis = System.currentTimeMillis();
+        context.getBeanFactory().registerSingleton("startupTimeline", this);
+        context.getBeanFactory().addBeanPostProcessor(new InitTimer());
+        context.addApplicationListener(new FirstRequestListener());
+    }
+
+    @Override
+    public void started(ConfigurableApplicationContext context, Duration timeTaken) {
+        startedMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public void ready(ConfigurableApplicationContext context, Duration timeTaken) {
+        long readyMillis = System.currentTimeMillis();
+        StartupReport startup = new StartupReport();
+        Map<String, Long> phases = startup.getPhases();
+        phases.put("jvm", startingMillis - jvmStartMillis);
+        phases.put("environment", contextPreparedMillis - startingMillis);
+
+        long named = 0;
+        long repositories = 0;
+        for (Map.Entry<String, String> phase : BEAN_PHASES.entrySet()) {
+            long millis = initMillis(phase.getKey());
+            phases.put(phase.getValue(), millis);
+            named += millis;
+        }
+        for (String beanName : initNanos.keySet()) {
+            if (beanName.endsWith("Repository")) {
+                repositories += initMillis(beanName);
+            }
+        }
+        phases.put("repositories", repositories);
+        phases.put("otherBeans", Math.max(0, startedMillis - contextPreparedMillis - named - repositories));
+        phases.put("warmUp", readyMillis - startedMillis);
+        startup.setReadyMs(readyMillis - jvmStartMillis);
+
+        List<Map.Entry<String, Long>> beans = new ArrayList<>(initNanos.entrySet());
+        beans.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> bean : beans.subList(0, Math.min(SLOWEST_BEANS, beans.size()))) {
+            startup.getSlowestBeans().put(bean.getKey(), TimeUnit.NANOSECONDS.toMillis(bean.getValue()));
+        }
+        initNanos.clear();
+        report = startup;
+
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        for (String phase : phases.keySet()) {
+            Gauge.builder("devclock.startup", startup, r -> r.getPhases().get(phase))
+                .description("Time spent in each startup phase")
+                .baseUnit("milliseconds")
+                .tag("phase", phase)
+                .register(meterRegistry);
+        }
+        Gauge.builder("devclock.startup.ready", startup, StartupReport::getReadyMs)
+            .description("Time from JVM start until the application reported ready")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        log.info("Ready {} ms after JVM start: {}", startup.getReadyMs(), phases);
+    }
+
+    /**
+     * The report of this start, or null until the application is ready.
+     */
+    public StartupReport getReport() {
+        return report;
+    }
+
+    private long initMillis(String beanName) {
+        Long nanos = initNanos.get(beanName);
+        return nanos != null ? TimeUnit.NANOSECONDS.toMillis(nanos) : 0L;
+    }
+
+    // Not a bean itself, so the context does not register it a second time
+    private class InitTimer implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            initStarts.put(beanName, System.nanoTime());
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            Long start = initStarts.remove(beanName);
+            if (start != null) {
+                initNanos.merge(beanName, System.nanoTime() - start, Long::sum);
+            }
+            return bean;
+        }
+    }
+
+    private class FirstRequestListener implements ApplicationListener<ServletRequestHandledEvent> {
+
+        private volatile boolean seen;
+
+        @Override
+        public void onApplicationEvent(ServletRequestHandledEvent event) {
+            StartupReport startup = report;
+            if (seen || startup == null) {
+                return;
+            }
+            seen = true;
+            long firstRequestMs = System.currentTimeMillis() - jvmStartMillis;
+            startup.setFirstRequestMs(firstRequestMs);
+            log.info("First request answered {} ms after JVM start ({} ms after ready, {} ms to process {})",
+                firstRequestMs, firstRequestMs - startup.getReadyMs(), event.getProcessingTimeMillis(),
+                event.getRequestUrl());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.devclock.config;
+
+import com.devclock.model.User;
+import com.devclock.service.UserService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+public class StompAuthenticationInterceptor implements ChannelInterceptor {
+
+    public static final String USERNAME_HEADER = "X-Username";
+
+    private final UserService userService;
+
+    public StompAuthenticationInterceptor(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String username = accessor.getFirstNativeHeader(USERNAME_HEADER);
+        if (username != null) {
+            User user = userService.authenticateUser(username);
+            accessor.setUser(new StompUser(user.getUsername(), user.getRole()));
+        }
+        return message;
+    }
+}
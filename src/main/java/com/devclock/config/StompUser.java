@@ -0,0 +1,29 @@
+package com.devclock.config;
+
+import com.devclock.model.User;
+
+import java.security.Principal;
+
+public class StompUser implements Principal {
+
+    private final String username;
+    private final User.Role role;
+
+    public StompUser(String username, User.Role role) {
+        this.username = username;
+        this.role = role;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public User.Role getRole() {
+        return role;
+    }
+
+    public User toUser() {
+        return new User(username, role);
+    }
+}
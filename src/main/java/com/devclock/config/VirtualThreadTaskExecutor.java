@@ -0,0 +1,69 @@
+package com.devclock.config;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs every task on a new virtual thread. Extends
+ * {@link ThreadPoolTaskExecutor} only because that is the one type
+ * {@code ChannelRegistration} accepts; the inherited pool never gets work.
+ */
+class VirtualThreadTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private final ExecutorService virtualThreads;
+
+    VirtualThreadTaskExecutor(String threadNamePrefix) {
+        setThreadNamePrefix(threadNamePrefix);
+        this.virtualThreads = VirtualThreads.newThreadPerTaskExecutor(threadNamePrefix);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            virtualThreads.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new TaskRejectedException("Executor " + virtualThreads + " did not accept task: " + task, e);
+        }
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        virtualThreads.shutdown();
+    }
+}
@@ -0,0 +1,51 @@
+package com.devclock.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads for Java 21+ runtimes. The application still compiles for
+ * Java 8, so the JDK API is reached through reflection.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    static boolean isSupported() {
+        return factory("virtual-") != null;
+    }
+
+    /**
+     * Returns a factory for virtual threads named {@code prefix} followed by
+     * a counter, or {@code null} when the runtime has none.
+     */
+    static ThreadFactory factory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            // Before Java 19, or Java 19/20 without --enable-preview
+            return null;
+        }
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread for every task.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        if (factory == null) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer, running on "
+                + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        }
+    }
+}
@@ -1,19 +1,75 @@
 package com.devclock.config;
 
+import com.devclock.service.UserService;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import javax.annotation.PostConstruct;
+
+/**
+ * STOMP over SockJS, and the threads that serve it. With
+ * {@code app.threads.virtual=true} on a Java 21+ runtime, Tomcat requests
+ * and the client inbound and outbound channels each run on a new virtual
+ * thread per task, so requests blocked on SQLite no longer hold one of a
+ * fixed number of pool threads. On older runtimes the setting is ignored
+ * with a warning.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    @Autowired
+    @Lazy
+    private UserService userService;
+
+    @Value("${app.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    @PostConstruct
+    public void resolveThreadMode() {
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            log.warn("app.threads.virtual is set but Java {} has no virtual threads; using platform threads",
+                System.getProperty("java.version"));
+            virtualThreads = false;
+        } else if (virtualThreads) {
+            log.info("Serving HTTP requests and STOMP messages on virtual threads");
+        }
+    }
+
+    // Tomcat leaves an executor it did not create running on shutdown, which
+    // for virtual threads is harmless: they do not keep the JVM alive.
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (virtualThreads) {
+                protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+            }
+        };
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        if (virtualThreads) {
+            // A thread per message would otherwise let frames for one
+            // session overtake each other
+            config.setPreservePublishOrder(true);
+        }
     }
 
     @Override
@@ -22,4 +78,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new StompAuthenticationInterceptor(userService));
+        if (virtualThreads) {
+            registration.taskExecutor(new VirtualThreadTaskExecutor("stomp-inbound-vt-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.taskExecutor(new VirtualThreadTaskExecutor("stomp-outbound-vt-"));
+        }
+    }
 }
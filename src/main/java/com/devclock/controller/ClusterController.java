@@ -0,0 +1,77 @@
+package com.devclock.controller;
+
+import com.devclock.model.BulkTimerResult;
+import com.devclock.model.Project;
+import com.devclock.service.ClusterForwarder;
+import com.devclock.service.ProjectService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timer operations forwarded by other cluster nodes to the owner of the
+ * projects. Only requests signed by {@link ClusterForwarder} are accepted;
+ * the body is read raw so the signature is checked over the bytes sent.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    @Autowired
+    private ClusterForwarder clusterForwarder;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostMapping("/projects/{id}/timer")
+    public ResponseEntity<?> toggleTimer(@PathVariable Long id,
+                                         @RequestHeader HttpHeaders headers,
+                                         @RequestBody byte[] body) throws IOException {
+        if (!clusterForwarder.verify(ClusterForwarder.togglePath(id), headers, body)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        ProjectController.BulkTimerRequest request = objectMapper.readValue(body,
+            ProjectController.BulkTimerRequest.class);
+        try {
+            Project project = projectService.toggleTimer(id, request.getState(),
+                headers.getFirst(ClusterForwarder.USERNAME_HEADER));
+            return ResponseEntity.ok(project);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @PostMapping("/projects/timers")
+    public ResponseEntity<?> toggleTimers(@RequestHeader HttpHeaders headers,
+                                          @RequestBody byte[] body) throws IOException {
+        if (!clusterForwarder.verify(ClusterForwarder.TOGGLE_ALL_PATH, headers, body)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        ProjectController.BulkTimerRequest request = objectMapper.readValue(body,
+            ProjectController.BulkTimerRequest.class);
+        try {
+            List<BulkTimerResult> results = projectService.toggleTimers(request.getProjectIds(), null,
+                request.getState(), headers.getFirst(ClusterForwarder.USERNAME_HEADER));
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
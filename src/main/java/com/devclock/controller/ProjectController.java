@@ -1,16 +1,25 @@
 package com.devclock.controller;
 
+import com.devclock.model.BulkTimerResult;
 import com.devclock.model.Project;
-import com.devclock.model.TimelineEntry;
+import com.devclock.model.ProjectSync;
 import com.devclock.model.User;
 import com.devclock.service.ProjectService;
+import com.devclock.service.ProjectSnapshotCache;
+import com.devclock.service.TimelineService;
 import com.devclock.service.UserService;
-import com.devclock.repository.TimelineEntryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,9 +27,13 @@ import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/projects")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {ProjectController.NEXT_CURSOR_HEADER, ProjectController.TOTAL_COUNT_HEADER,
+    HttpHeaders.ETAG})
 public class ProjectController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     @Autowired
     private ProjectService projectService;
 
@@ -28,19 +41,51 @@ public class ProjectController {
     private UserService userService;
 
     @Autowired
-    private TimelineEntryRepository timelineEntryRepository;
+    private TimelineService timelineService;
 
     @GetMapping
-    public ResponseEntity<List<Project>> getAllProjects(@RequestHeader("X-Username") String username) {
+    public ResponseEntity<byte[]> getAllProjects(@RequestHeader("X-Username") String username) {
         try {
             User user = userService.authenticateUser(username);
-            List<Project> projects = projectService.getProjectsForUser(user);
-            return ResponseEntity.ok(projects);
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(projectService.getProjectsJsonForUser(user));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping("/sync")
+    public ResponseEntity<ProjectSync> syncProjects(@RequestHeader("X-Username") String username) {
+        try {
+            User user = userService.authenticateUser(username);
+            return ResponseEntity.ok(projectService.syncForUser(user));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProjects(@RequestHeader("X-Username") String username,
+                                            @RequestParam String q,
+                                            @RequestParam(defaultValue = "20") int limit,
+                                            @RequestParam(required = false) String after) {
+        try {
+            User user = userService.authenticateUser(username);
+            ProjectService.SearchPage page = projectService.searchProjects(user, q, after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotal()));
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getProjects());
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Project> getProject(@PathVariable Long id) {
         Optional<Project> project = projectService.getProjectById(id);
@@ -108,16 +153,71 @@ public class ProjectController {
         }
     }
 
-    @GetMapping("/update-active")
-    public ResponseEntity<List<Project>> updateActiveProjects() {
-        List<Project> projects = projectService.updateAllActiveProjects();
-        return ResponseEntity.ok(projects);
+    @PostMapping("/bulk")
+    public ResponseEntity<?> toggleTimers(@RequestBody BulkTimerRequest request,
+                                          @RequestHeader("X-Username") String username) {
+        try {
+            User user = userService.authenticateUser(username);
+            User target = null;
+            if (request.getUsername() != null) {
+                // Developers may only act on their own running timers
+                if (!user.isAdmin() && !request.getUsername().equals(user.getUsername())) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+                }
+                target = userService.authenticateUser(request.getUsername());
+            }
+            List<BulkTimerResult> results = projectService.toggleTimers(request.getProjectIds(), target,
+                request.getState(), user.getUsername());
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
     }
 
-    @GetMapping("/current-times")
-    public ResponseEntity<List<Project>> getCurrentTimes() {
-        List<Project> projects = projectService.getProjectsWithCurrentTimes();
-        return ResponseEntity.ok(projects);
+    @GetMapping({"/current-times", "/update-active"})
+    public ResponseEntity<byte[]> getCurrentTimes(WebRequest request) {
+        long now = System.currentTimeMillis();
+        ProjectSnapshotCache.Snapshot snapshot = projectService.getProjectSnapshot();
+        String etag = snapshot.etagAt(now);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(snapshot.jsonAt(now));
+    }
+
+    public static class BulkTimerRequest {
+        private List<Long> projectIds;
+        private String username;
+        private Project.TimerState state;
+
+        public List<Long> getProjectIds() {
+            return projectIds;
+        }
+
+        public void setProjectIds(List<Long> projectIds) {
+            this.projectIds = projectIds;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public Project.TimerState getState() {
+            return state;
+        }
+
+        public void setState(Project.TimerState state) {
+            this.state = state;
+        }
     }
 
     public static class CreateProjectRequest {
@@ -184,43 +284,67 @@ public class ProjectController {
         }
     }
 
-    @GetMapping("/{id}/timeline")
-    public ResponseEntity<List<TimelineEntry>> getProjectTimeline(@PathVariable Long id,
-                                                                @RequestHeader("X-Username") String username) {
+    @GetMapping(value = "/{id}/timeline", params = "!limit")
+    public ResponseEntity<StreamingResponseBody> getProjectTimeline(@PathVariable Long id,
+                                                                    @RequestHeader("X-Username") String username,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam(required = false)
+                                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                    @RequestParam(required = false)
+                                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         try {
-            System.out.println("Timeline endpoint called for project " + id + " by user " + username);
-            User user = userService.authenticateUser(username);
-            
-            if (!user.isAdmin()) {
-                System.out.println("Access denied - user is not admin");
-                return ResponseEntity.status(403).build();
+            HttpStatus denied = checkTimelineAccess(id, username);
+            if (denied != null) {
+                return ResponseEntity.status(denied).build();
             }
             
-            Optional<Project> projectOpt = projectService.getProjectById(id);
-            if (!projectOpt.isPresent()) {
-                System.out.println("Project not found: " + id);
-                return ResponseEntity.notFound().build();
+            TimelineService.Query query = new TimelineService.Query(id, after, from, to);
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(timelineService.stream(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/{id}/timeline", params = "limit")
+    public ResponseEntity<?> getProjectTimelinePage(@PathVariable Long id,
+                                                    @RequestHeader("X-Username") String username,
+                                                    @RequestParam int limit,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            HttpStatus denied = checkTimelineAccess(id, username);
+            if (denied != null) {
+                return ResponseEntity.status(denied).build();
             }
             
-            Project project = projectOpt.get();
-            
-            List<TimelineEntry> timeline = timelineEntryRepository.findByProjectIdOrderByTimestamp(id);
-            System.out.println("Found " + timeline.size() + " timeline entries for project " + id);
-            
-            if (timeline.isEmpty()) {
-                System.out.println("No timeline entries found, creating project creation entry");
-                TimelineEntry creationEntry = new TimelineEntry(project, "PROJECT_CREATED", 
-                    project.getCreatedAt(), "Project created", "system");
-                timelineEntryRepository.save(creationEntry);
-                timeline = timelineEntryRepository.findByProjectIdOrderByTimestamp(id);
-                System.out.println("After creating entry, timeline size: " + timeline.size());
+            TimelineService.Page page = timelineService.page(new TimelineService.Query(id, after, from, to), limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
             }
-            
-            return ResponseEntity.ok(timeline);
+            return response.body(page.getEntries());
         } catch (IllegalArgumentException e) {
-            System.out.println("Timeline endpoint error: " + e.getMessage());
-            return ResponseEntity.badRequest().build();
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private HttpStatus checkTimelineAccess(Long id, String username) {
+        User user = userService.authenticateUser(username);
+        if (!user.isAdmin()) {
+            return HttpStatus.FORBIDDEN;
+        }
+        
+        if (!projectService.getProjectById(id).isPresent()) {
+            return HttpStatus.NOT_FOUND;
         }
+        return null;
     }
 
     public static class AssignProjectRequest {
@@ -0,0 +1,86 @@
+package com.devclock.controller;
+
+import com.devclock.model.User;
+import com.devclock.service.DailyRollupService;
+import com.devclock.service.TimelineService;
+import com.devclock.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = "*")
+public class ReportController {
+
+    @Autowired
+    private DailyRollupService dailyRollupService;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private UserService userService;
+
+    @GetMapping("/daily")
+    public ResponseEntity<?> getDailyReport(@RequestHeader("X-Username") String username,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                            @RequestParam(required = false) Long projectId,
+                                            @RequestParam(name = "username", required = false) String reportUsername) {
+        try {
+            User user = userService.authenticateUser(username);
+            // Developers only see their own time
+            if (!user.isAdmin()) {
+                if (reportUsername != null && !reportUsername.equals(user.getUsername())) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+                }
+                reportUsername = user.getUsername();
+            }
+            return ResponseEntity.ok(dailyRollupService.report(from, to, projectId, reportUsername));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/timeline")
+    public ResponseEntity<StreamingResponseBody> exportTimeline(@RequestHeader("X-Username") String username,
+                                                                @RequestParam(defaultValue = "csv") String format,
+                                                                @RequestParam(required = false) List<Long> projectId,
+                                                                @RequestParam(required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                @RequestParam(required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            User user = userService.authenticateUser(username);
+            if (!user.isAdmin()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            TimelineService.ExportFormat exportFormat = TimelineService.ExportFormat.parse(format);
+            StreamingResponseBody body = timelineService.export(projectId, from, to, exportFormat);
+            String filename = "timeline." + exportFormat.name().toLowerCase();
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
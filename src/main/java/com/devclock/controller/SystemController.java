@@ -0,0 +1,102 @@
+package com.devclock.controller;
+
+import com.devclock.config.StartupTimeline;
+import com.devclock.model.BroadcastStats;
+import com.devclock.model.LedgerReport;
+import com.devclock.model.StartupReport;
+import com.devclock.model.User;
+import com.devclock.service.ProjectEventPublisher;
+import com.devclock.service.TimelineArchive;
+import com.devclock.service.TimerLedger;
+import com.devclock.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/system")
+@CrossOrigin(origins = "*")
+public class SystemController {
+
+    @Autowired
+    private ProjectEventPublisher projectEventPublisher;
+
+    @Autowired
+    private TimelineArchive timelineArchive;
+
+    @Autowired
+    private TimerLedger timerLedger;
+
+    @Autowired
+    private StartupTimeline startupTimeline;
+
+    @Autowired
+    private UserService userService;
+
+    @GetMapping("/broadcast-stats")
+    public ResponseEntity<BroadcastStats> getBroadcastStats() {
+        return ResponseEntity.ok(projectEventPublisher.getStats());
+    }
+
+    /**
+     * Kept free of authentication and database access so clients can sample
+     * it several times to estimate their clock offset from the round trip.
+     */
+    @GetMapping("/clock")
+    public ResponseEntity<Map<String, Object>> getClock() {
+        Map<String, Object> clock = new LinkedHashMap<>();
+        clock.put("epochMs", System.currentTimeMillis());
+        clock.put("zone", ZoneId.systemDefault().getId());
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(clock);
+    }
+
+    /**
+     * How long the current start took, phase by phase; 503 until the
+     * application is ready.
+     */
+    @GetMapping("/startup")
+    public ResponseEntity<StartupReport> getStartupReport() {
+        StartupReport report = startupTimeline.getReport();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/timeline-archive")
+    public ResponseEntity<Map<String, Integer>> archiveTimeline(@RequestHeader("X-Username") String username) {
+        try {
+            User user = userService.authenticateUser(username);
+            if (!user.isAdmin()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            return ResponseEntity.ok(Collections.singletonMap("archived", timelineArchive.archiveOldEntries()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Replays all timeline history and reports where project totals or
+     * ledger checkpoints disagree with it. Reads only.
+     */
+    @PostMapping("/ledger-verification")
+    public ResponseEntity<LedgerReport> verifyLedger(@RequestHeader("X-Username") String username) {
+        try {
+            User user = userService.authenticateUser(username);
+            if (!user.isAdmin()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            return ResponseEntity.ok(timerLedger.verify());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
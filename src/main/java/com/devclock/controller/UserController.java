@@ -1,8 +1,9 @@
 package com.devclock.controller;
 
 import com.devclock.model.User;
-import com.devclock.service.UserService;
+import com.devclock.service.UserDirectory;
 import com.devclock.service.UserFileService;
+import com.devclock.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,7 +22,7 @@ public class UserController {
     private UserService userService;
     
     @Autowired
-    private UserFileService userFileService;
+    private UserDirectory userDirectory;
 
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
@@ -62,7 +63,7 @@ public class UserController {
     @GetMapping("/available")
     public ResponseEntity<List<UserFileService.UserConfig>> getAvailableUsers() {
         try {
-            List<UserFileService.UserConfig> users = userFileService.getUsers();
+            List<UserFileService.UserConfig> users = userDirectory.getUserConfigs();
             return ResponseEntity.ok(users);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
@@ -0,0 +1,61 @@
+package com.devclock.model;
+
+public class BroadcastStats {
+
+    private long updatesReceived;
+    private long updatesMerged;
+    private long batchesPublished;
+    private long framesPublished;
+    private long eventsPublished;
+
+    public BroadcastStats() {}
+
+    public BroadcastStats(long updatesReceived, long updatesMerged, long batchesPublished,
+                          long framesPublished, long eventsPublished) {
+        this.updatesReceived = updatesReceived;
+        this.updatesMerged = updatesMerged;
+        this.batchesPublished = batchesPublished;
+        this.framesPublished = framesPublished;
+        this.eventsPublished = eventsPublished;
+    }
+
+    public long getUpdatesReceived() {
+        return updatesReceived;
+    }
+
+    public void setUpdatesReceived(long updatesReceived) {
+        this.updatesReceived = updatesReceived;
+    }
+
+    public long getUpdatesMerged() {
+        return updatesMerged;
+    }
+
+    public void setUpdatesMerged(long updatesMerged) {
+        this.updatesMerged = updatesMerged;
+    }
+
+    public long getBatchesPublished() {
+        return batchesPublished;
+    }
+
+    public void setBatchesPublished(long batchesPublished) {
+        this.batchesPublished = batchesPublished;
+    }
+
+    public long getFramesPublished() {
+        return framesPublished;
+    }
+
+    public void setFramesPublished(long framesPublished) {
+        this.framesPublished = framesPublished;
+    }
+
+    public long getEventsPublished() {
+        return eventsPublished;
+    }
+
+    public void setEventsPublished(long eventsPublished) {
+        this.eventsPublished = eventsPublished;
+    }
+}
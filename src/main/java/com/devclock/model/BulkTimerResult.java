@@ -0,0 +1,63 @@
+package com.devclock.model;
+
+/**
+ * Outcome of a bulk timer operation for one project.
+ */
+public class BulkTimerResult {
+
+    public enum Status {
+        APPLIED, UNCHANGED, NOT_FOUND, FAILED
+    }
+
+    private Long projectId;
+    private Status status;
+    private Project project;
+
+    public BulkTimerResult() {}
+
+    public BulkTimerResult(Long projectId, Status status, Project project) {
+        this.projectId = projectId;
+        this.status = status;
+        this.project = project;
+    }
+
+    public static BulkTimerResult applied(Project project) {
+        return new BulkTimerResult(project.getId(), Status.APPLIED, project);
+    }
+
+    public static BulkTimerResult unchanged(Project project) {
+        return new BulkTimerResult(project.getId(), Status.UNCHANGED, project);
+    }
+
+    public static BulkTimerResult notFound(Long projectId) {
+        return new BulkTimerResult(projectId, Status.NOT_FOUND, null);
+    }
+
+    public static BulkTimerResult failed(Long projectId) {
+        return new BulkTimerResult(projectId, Status.FAILED, null);
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public void setProject(Project project) {
+        this.project = project;
+    }
+}
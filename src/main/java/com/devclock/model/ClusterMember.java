@@ -0,0 +1,50 @@
+package com.devclock.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One node of a cluster sharing the database, with the address other nodes
+ * use to forward timer requests to it. A node whose heartbeat is older than
+ * the lease time is treated as gone.
+ */
+@Entity
+@Table(name = "cluster_members")
+public class ClusterMember {
+
+    @Id
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private String url;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    public ClusterMember() {}
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+}
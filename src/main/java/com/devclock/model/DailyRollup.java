@@ -0,0 +1,109 @@
+package com.devclock.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Milliseconds of development or wait time spent on one project by one user on
+ * one calendar day. Rows grow by upsert as sessions end; see
+ * {@code DailyRollupService}.
+ */
+@Entity
+@Table(name = "daily_rollups", indexes = {
+    @Index(name = "idx_daily_rollups_key", columnList = "day, project_id, username, category", unique = true),
+    @Index(name = "idx_daily_rollups_project_day", columnList = "project_id, day")
+})
+public class DailyRollup {
+
+    public enum Category {
+        DEV, WAIT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @JsonIgnore
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Category category;
+
+    @Column(nullable = false)
+    private Long milliseconds;
+
+    public DailyRollup() {}
+
+    public DailyRollup(LocalDate day, Long projectId, String username, Category category, Long milliseconds) {
+        this.day = day;
+        this.projectId = projectId;
+        this.username = username;
+        this.category = category;
+        this.milliseconds = milliseconds;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    public Long getMilliseconds() {
+        return milliseconds;
+    }
+
+    public void setMilliseconds(Long milliseconds) {
+        this.milliseconds = milliseconds;
+    }
+
+    /**
+     * {@link #getMilliseconds} in whole seconds.
+     */
+    public Long getSeconds() {
+        return milliseconds != null ? milliseconds / 1000 : null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.devclock.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A project's timer state as replayed from its timeline up to and including
+ * entry {@code lastEntryId}. Replays start from here and only read the
+ * entries that came after.
+ */
+@Entity
+@Table(name = "ledger_checkpoints", indexes = {
+    @Index(name = "idx_ledger_checkpoints_last_entry", columnList = "last_entry_id")
+})
+public class LedgerCheckpoint {
+
+    @Id
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "current_state", nullable = false)
+    private Project.TimerState currentState;
+
+    @Column(name = "last_state_change")
+    private LocalDateTime lastStateChange;
+
+    @Column(name = "dev_time_ms", nullable = false)
+    private Long devTimeMs;
+
+    @Column(name = "wait_time_ms", nullable = false)
+    private Long waitTimeMs;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public LedgerCheckpoint() {}
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Long getLastEntryId() {
+        return lastEntryId;
+    }
+
+    public void setLastEntryId(Long lastEntryId) {
+        this.lastEntryId = lastEntryId;
+    }
+
+    public Project.TimerState getCurrentState() {
+        return currentState;
+    }
+
+    public void setCurrentState(Project.TimerState currentState) {
+        this.currentState = currentState;
+    }
+
+    public LocalDateTime getLastStateChange() {
+        return lastStateChange;
+    }
+
+    public void setLastStateChange(LocalDateTime lastStateChange) {
+        this.lastStateChange = lastStateChange;
+    }
+
+    public Long getDevTimeMs() {
+        return devTimeMs;
+    }
+
+    public void setDevTimeMs(Long devTimeMs) {
+        this.devTimeMs = devTimeMs;
+    }
+
+    public Long getWaitTimeMs() {
+        return waitTimeMs;
+    }
+
+    public void setWaitTimeMs(Long waitTimeMs) {
+        this.waitTimeMs = waitTimeMs;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
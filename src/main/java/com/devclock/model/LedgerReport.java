@@ -0,0 +1,102 @@
+package com.devclock.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of replaying every project's timeline and comparing the result
+ * with the project rows and ledger checkpoints.
+ */
+public class LedgerReport {
+
+    /**
+     * One field where a row or checkpoint disagrees with the timeline.
+     */
+    public static class Mismatch {
+        private Long projectId;
+        private String source;
+        private String field;
+        private Object expected;
+        private Object actual;
+
+        public Mismatch() {}
+
+        public Mismatch(Long projectId, String source, String field, Object expected, Object actual) {
+            this.projectId = projectId;
+            this.source = source;
+            this.field = field;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public Long getProjectId() {
+            return projectId;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Object getExpected() {
+            return expected;
+        }
+
+        public Object getActual() {
+            return actual;
+        }
+    }
+
+    private int projectsChecked;
+    private long entriesReplayed;
+    private int mismatchCount;
+    private List<Mismatch> mismatches = new ArrayList<>();
+    private long elapsedMs;
+
+    public int getProjectsChecked() {
+        return projectsChecked;
+    }
+
+    public void setProjectsChecked(int projectsChecked) {
+        this.projectsChecked = projectsChecked;
+    }
+
+    public long getEntriesReplayed() {
+        return entriesReplayed;
+    }
+
+    public void setEntriesReplayed(long entriesReplayed) {
+        this.entriesReplayed = entriesReplayed;
+    }
+
+    public int getMismatchCount() {
+        return mismatchCount;
+    }
+
+    public void setMismatchCount(int mismatchCount) {
+        this.mismatchCount = mismatchCount;
+    }
+
+    /**
+     * The first mismatches found, ordered by project; {@link #getMismatchCount}
+     * counts all of them.
+     */
+    public List<Mismatch> getMismatches() {
+        return mismatches;
+    }
+
+    public void setMismatches(List<Mismatch> mismatches) {
+        this.mismatches = mismatches;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+}
@@ -4,9 +4,13 @@ import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 @Entity
-@Table(name = "projects")
+@Table(name = "projects", indexes = {
+    @Index(name = "idx_projects_assigned_user", columnList = "assigned_user_username, created_at"),
+    @Index(name = "idx_projects_assigned_to_all", columnList = "assigned_to_all, created_at")
+})
 public class Project {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,18 +25,18 @@ public class Project {
     private String description;
 
     @NotNull
-    @Column(name = "dev_time_seconds", nullable = false)
-    private Long devTimeSeconds = 0L;
+    @Column(name = "dev_time_ms", nullable = false, updatable = false)
+    private Long devTimeMs = 0L;
 
     @NotNull
-    @Column(name = "wait_time_seconds", nullable = false)
-    private Long waitTimeSeconds = 0L;
+    @Column(name = "wait_time_ms", nullable = false, updatable = false)
+    private Long waitTimeMs = 0L;
 
     @Enumerated(EnumType.STRING)
-    @Column(name = "current_state")
+    @Column(name = "current_state", updatable = false)
     private TimerState currentState = TimerState.STOPPED;
 
-    @Column(name = "last_state_change")
+    @Column(name = "last_state_change", updatable = false)
     private LocalDateTime lastStateChange;
 
     @Column(name = "created_at", nullable = false)
@@ -62,6 +66,37 @@ public class Project {
         this.description = description;
     }
 
+    public Project copy() {
+        Project copy = new Project(name, description);
+        copy.id = id;
+        copy.devTimeMs = devTimeMs;
+        copy.waitTimeMs = waitTimeMs;
+        copy.currentState = currentState;
+        copy.lastStateChange = lastStateChange;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.assignedUserUsername = assignedUserUsername;
+        copy.assignedToAll = assignedToAll;
+        return copy;
+    }
+
+    // Timer columns are owned by TimerEngine and only written through
+    // ProjectRepository.updateTimerState, so applying live state here never
+    // marks the entity dirty.
+    public void applyTimerState(TimerState currentState, LocalDateTime lastStateChange,
+                                long devTimeMs, long waitTimeMs) {
+        this.currentState = currentState;
+        this.lastStateChange = lastStateChange;
+        this.devTimeMs = devTimeMs;
+        this.waitTimeMs = waitTimeMs;
+    }
+
+    public boolean isVisibleTo(User user) {
+        return user.isAdmin()
+            || Boolean.TRUE.equals(assignedToAll)
+            || user.getUsername().equals(assignedUserUsername);
+    }
+
     public Long getId() {
         return id;
     }
@@ -88,24 +123,36 @@ public class Project {
         this.updatedAt = LocalDateTime.now();
     }
 
-    public Long getDevTimeSeconds() {
-        return devTimeSeconds;
+    public Long getDevTimeMs() {
+        return devTimeMs;
     }
 
-    public void setDevTimeSeconds(Long devTimeSeconds) {
-        this.devTimeSeconds = devTimeSeconds;
+    public void setDevTimeMs(Long devTimeMs) {
+        this.devTimeMs = devTimeMs;
         this.updatedAt = LocalDateTime.now();
     }
 
-    public Long getWaitTimeSeconds() {
-        return waitTimeSeconds;
+    public Long getWaitTimeMs() {
+        return waitTimeMs;
     }
 
-    public void setWaitTimeSeconds(Long waitTimeSeconds) {
-        this.waitTimeSeconds = waitTimeSeconds;
+    public void setWaitTimeMs(Long waitTimeMs) {
+        this.waitTimeMs = waitTimeMs;
         this.updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * The totals in whole seconds, for clients that predate
+     * {@link #getDevTimeMs}.
+     */
+    public Long getDevTimeSeconds() {
+        return devTimeMs != null ? devTimeMs / 1000 : null;
+    }
+
+    public Long getWaitTimeSeconds() {
+        return waitTimeMs != null ? waitTimeMs / 1000 : null;
+    }
+
     public TimerState getCurrentState() {
         return currentState;
     }
@@ -120,6 +167,16 @@ public class Project {
         return lastStateChange;
     }
 
+    /**
+     * The last transition as an instant, so clients in another time zone
+     * can extrapolate running timers from the totals without asking again.
+     */
+    public Long getLastStateChangeEpochMs() {
+        return lastStateChange != null
+            ? lastStateChange.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            : null;
+    }
+
     public void setLastStateChange(LocalDateTime lastStateChange) {
         this.lastStateChange = lastStateChange;
     }
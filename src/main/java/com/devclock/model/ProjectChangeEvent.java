@@ -0,0 +1,87 @@
+package com.devclock.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+public class ProjectChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private Type type;
+    private String stream;
+    private long sequence;
+    private Long projectId;
+    private String changes;
+    private long serverTime;
+
+    public ProjectChangeEvent() {}
+
+    public ProjectChangeEvent(Type type, String stream, long sequence, Long projectId, String changes) {
+        this.type = type;
+        this.stream = stream;
+        this.sequence = sequence;
+        this.projectId = projectId;
+        this.changes = changes;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * Names the node run that numbered the event; sequences from different
+     * streams are unrelated.
+     */
+    public String getStream() {
+        return stream;
+    }
+
+    public void setStream(String stream) {
+        this.stream = stream;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    /**
+     * The changed fields as a JSON object, serialized once per project and
+     * batch and written into each user's frame as is.
+     */
+    @JsonRawValue
+    public String getChanges() {
+        return changes;
+    }
+
+    public void setChanges(String changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * Server clock in epoch milliseconds when the event was sent.
+     */
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+}
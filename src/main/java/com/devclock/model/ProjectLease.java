@@ -0,0 +1,65 @@
+package com.devclock.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Which cluster node owns a project's timer until {@code expiresAt}. The
+ * token goes up each time the lease changes hands, and timer writes only
+ * apply while the writer's node and token still match, so a node that lost
+ * the lease cannot overwrite the new owner's state.
+ */
+@Entity
+@Table(name = "project_leases", indexes = {
+    @Index(name = "idx_project_leases_node", columnList = "node_id"),
+    @Index(name = "idx_project_leases_expires", columnList = "expires_at")
+})
+public class ProjectLease {
+
+    @Id
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private Long token;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public ProjectLease() {}
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getToken() {
+        return token;
+    }
+
+    public void setToken(Long token) {
+        this.token = token;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
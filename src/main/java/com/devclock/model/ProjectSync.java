@@ -0,0 +1,52 @@
+package com.devclock.model;
+
+import java.util.List;
+
+public class ProjectSync {
+
+    private String stream;
+    private long sequence;
+    private List<ProjectView> projects;
+    private long serverTime;
+
+    public ProjectSync() {}
+
+    public ProjectSync(String stream, long sequence, List<ProjectView> projects) {
+        this.stream = stream;
+        this.sequence = sequence;
+        this.projects = projects;
+        this.serverTime = System.currentTimeMillis();
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public void setStream(String stream) {
+        this.stream = stream;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public List<ProjectView> getProjects() {
+        return projects;
+    }
+
+    public void setProjects(List<ProjectView> projects) {
+        this.projects = projects;
+    }
+
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+}
@@ -0,0 +1,114 @@
+package com.devclock.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a project with the same JSON shape as
+ * {@link Project}. Loaded by constructor expressions in
+ * {@code ProjectRepository}, so list reads never materialize managed
+ * entities, and immutable, so one instance can back every cached snapshot
+ * and rendered payload.
+ */
+public final class ProjectView {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final Long devTimeMs;
+    private final Long waitTimeMs;
+    private final Project.TimerState currentState;
+    private final LocalDateTime lastStateChange;
+    private final Long lastStateChangeEpochMs;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final String assignedUserUsername;
+    private final Boolean assignedToAll;
+
+    public ProjectView(Long id, String name, String description, Long devTimeMs, Long waitTimeMs,
+                       Project.TimerState currentState, LocalDateTime lastStateChange, LocalDateTime createdAt,
+                       LocalDateTime updatedAt, String assignedUserUsername, Boolean assignedToAll) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.devTimeMs = devTimeMs;
+        this.waitTimeMs = waitTimeMs;
+        this.currentState = currentState;
+        this.lastStateChange = lastStateChange;
+        // Converted the way sqlite-jdbc stores it, so it matches the column
+        this.lastStateChangeEpochMs = lastStateChange != null ? Timestamp.valueOf(lastStateChange).getTime() : null;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.assignedUserUsername = assignedUserUsername;
+        this.assignedToAll = assignedToAll;
+    }
+
+    public ProjectView withTimerState(Project.TimerState currentState, LocalDateTime lastStateChange,
+                                      long devTimeMs, long waitTimeMs) {
+        return new ProjectView(id, name, description, devTimeMs, waitTimeMs, currentState,
+            lastStateChange, createdAt, updatedAt, assignedUserUsername, assignedToAll);
+    }
+
+    @JsonIgnore
+    public boolean isRunning() {
+        return currentState != Project.TimerState.STOPPED && lastStateChange != null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getDevTimeMs() {
+        return devTimeMs;
+    }
+
+    public Long getWaitTimeMs() {
+        return waitTimeMs;
+    }
+
+    public Long getDevTimeSeconds() {
+        return devTimeMs != null ? devTimeMs / 1000 : null;
+    }
+
+    public Long getWaitTimeSeconds() {
+        return waitTimeMs != null ? waitTimeMs / 1000 : null;
+    }
+
+    public Project.TimerState getCurrentState() {
+        return currentState;
+    }
+
+    public LocalDateTime getLastStateChange() {
+        return lastStateChange;
+    }
+
+    public Long getLastStateChangeEpochMs() {
+        return lastStateChangeEpochMs;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public String getAssignedUserUsername() {
+        return assignedUserUsername;
+    }
+
+    public Boolean getAssignedToAll() {
+        return assignedToAll;
+    }
+}
@@ -0,0 +1,64 @@
+package com.devclock.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where the time went between the JVM starting and the application serving
+ * its first request, in milliseconds.
+ */
+public class StartupReport {
+
+    private Map<String, Long> phases = new LinkedHashMap<>();
+    private Map<String, Long> slowestBeans = new LinkedHashMap<>();
+    private Long readyMs;
+    private Long firstRequestMs;
+
+    /**
+     * Consecutive phases in startup order; together they add up to
+     * {@link #getReadyMs}.
+     */
+    public Map<String, Long> getPhases() {
+        return phases;
+    }
+
+    public void setPhases(Map<String, Long> phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Initialization time of the slowest individual beans, already counted
+     * in the phases.
+     */
+    public Map<String, Long> getSlowestBeans() {
+        return slowestBeans;
+    }
+
+    public void setSlowestBeans(Map<String, Long> slowestBeans) {
+        this.slowestBeans = slowestBeans;
+    }
+
+    /**
+     * From JVM start until the application reported ready, or null while it
+     * is still starting.
+     */
+    public Long getReadyMs() {
+        return readyMs;
+    }
+
+    public void setReadyMs(Long readyMs) {
+        this.readyMs = readyMs;
+    }
+
+    /**
+     * From JVM start until the first HTTP request was answered, or null
+     * until then.
+     */
+    public Long getFirstRequestMs() {
+        return firstRequestMs;
+    }
+
+    public void setFirstRequestMs(Long firstRequestMs) {
+        this.firstRequestMs = firstRequestMs;
+    }
+}
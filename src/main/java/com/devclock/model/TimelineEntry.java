@@ -7,7 +7,10 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "timeline_entries")
+@Table(name = "timeline_entries", indexes = {
+    @Index(name = "idx_timeline_project_timestamp", columnList = "project_id, timestamp, id"),
+    @Index(name = "idx_timeline_timestamp", columnList = "timestamp, id")
+})
 public class TimelineEntry {
     
     @Id
@@ -32,8 +35,8 @@ public class TimelineEntry {
     @Column
     private String description;
     
-    @Column
-    private Long durationSeconds; // Duration of the session that ended (for STOP events)
+    @Column(name = "duration_ms")
+    private Long durationMs; // Duration of the session that ended (for STOP events)
     
     @Column
     private String username; // User who performed the action
@@ -97,12 +100,20 @@ public class TimelineEntry {
         this.description = description;
     }
     
-    public Long getDurationSeconds() {
-        return durationSeconds;
+    public Long getDurationMs() {
+        return durationMs;
     }
     
-    public void setDurationSeconds(Long durationSeconds) {
-        this.durationSeconds = durationSeconds;
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+    
+    /**
+     * {@link #getDurationMs} in whole seconds, for clients and exports that
+     * predate millisecond durations.
+     */
+    public Long getDurationSeconds() {
+        return durationMs != null ? durationMs / 1000 : null;
     }
     
     public String getUsername() {
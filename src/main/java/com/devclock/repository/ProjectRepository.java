@@ -1,19 +1,76 @@
 package com.devclock.repository;
 
 import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, Long> {
     
-    List<Project> findByOrderByCreatedAtDesc();
+    String VIEW = "SELECT new com.devclock.model.ProjectView(p.id, p.name, p.description, p.devTimeMs, " +
+                  "p.waitTimeMs, p.currentState, p.lastStateChange, p.createdAt, p.updatedAt, " +
+                  "p.assignedUserUsername, p.assignedToAll) FROM Project p ";
+
+    @Query(VIEW + "ORDER BY p.createdAt DESC")
+    List<ProjectView> findAllViews();
+
+    @Query(VIEW + "WHERE p.assignedUserUsername = :username OR p.assignedToAll = true ORDER BY p.createdAt DESC")
+    List<ProjectView> findViewsVisibleTo(@Param("username") String username);
+    
+    @Query(VIEW + "WHERE p.id IN :ids")
+    List<ProjectView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
     
     @Query("SELECT p FROM Project p WHERE p.currentState != 'STOPPED'")
     List<Project> findActiveProjects();
+
+    /**
+     * Ids of the running projects whose current session {@code username}
+     * started, going by the latest START entry on each timeline.
+     */
+    @Query("SELECT p.id FROM Project p WHERE p.currentState != 'STOPPED' AND EXISTS (" +
+           "SELECT e FROM TimelineEntry e WHERE e.projectId = p.id AND e.username = :username " +
+           "AND e.eventType IN ('START_DEV', 'START_WAIT') AND NOT EXISTS (" +
+           "SELECT later FROM TimelineEntry later WHERE later.projectId = p.id " +
+           "AND later.eventType IN ('START_DEV', 'START_WAIT') AND (later.timestamp > e.timestamp " +
+           "OR (later.timestamp = e.timestamp AND later.id > e.id)))) ORDER BY p.id")
+    List<Long> findRunningIdsStartedBy(@Param("username") String username);
     
     boolean existsByName(String name);
+
+    @Modifying
+    @Query("UPDATE Project p SET p.currentState = :state, p.lastStateChange = :lastStateChange, " +
+           "p.devTimeMs = :devTimeMs, p.waitTimeMs = :waitTimeMs, p.updatedAt = :updatedAt " +
+           "WHERE p.id = :id")
+    int updateTimerState(@Param("id") Long id,
+                         @Param("state") Project.TimerState state,
+                         @Param("lastStateChange") LocalDateTime lastStateChange,
+                         @Param("devTimeMs") Long devTimeMs,
+                         @Param("waitTimeMs") Long waitTimeMs,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * {@link #updateTimerState}, applied only while {@code nodeId} still
+     * holds the project's lease under {@code token}.
+     */
+    @Modifying
+    @Query("UPDATE Project p SET p.currentState = :state, p.lastStateChange = :lastStateChange, " +
+           "p.devTimeMs = :devTimeMs, p.waitTimeMs = :waitTimeMs, p.updatedAt = :updatedAt " +
+           "WHERE p.id = :id AND EXISTS (SELECT l FROM ProjectLease l WHERE l.projectId = :id " +
+           "AND l.nodeId = :nodeId AND l.token = :token)")
+    int updateTimerStateFenced(@Param("id") Long id,
+                               @Param("state") Project.TimerState state,
+                               @Param("lastStateChange") LocalDateTime lastStateChange,
+                               @Param("devTimeMs") Long devTimeMs,
+                               @Param("waitTimeMs") Long waitTimeMs,
+                               @Param("updatedAt") LocalDateTime updatedAt,
+                               @Param("nodeId") String nodeId,
+                               @Param("token") Long token);
 }
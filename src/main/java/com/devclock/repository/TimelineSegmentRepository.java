@@ -0,0 +1,9 @@
+package com.devclock.repository;
+
+import com.devclock.model.TimelineSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TimelineSegmentRepository extends JpaRepository<TimelineSegment, Long> {
+}
@@ -0,0 +1,18 @@
+package com.devclock.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries project changes between the nodes of a cluster, in the order each
+ * node published them. A node never receives its own messages.
+ */
+public interface ClusterBus {
+
+    void publish(String message);
+
+    /**
+     * Registers a listener for messages from other nodes. Listeners are
+     * called on one thread, in delivery order.
+     */
+    void subscribe(Consumer<String> listener);
+}
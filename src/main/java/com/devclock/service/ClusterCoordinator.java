@@ -0,0 +1,259 @@
+package com.devclock.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership and project ownership for running several instances against
+ * one database ({@code app.cluster.enabled=true}). Each node heartbeats into
+ * {@code cluster_members}; the live node with the lowest id is the leader
+ * and runs the cluster-wide jobs.
+ * <p>
+ * A project's timer lives on whichever node holds its row in
+ * {@code project_leases}. Leases are renewed together with the heartbeat,
+ * so they only change hands when their node stops. Running timers whose
+ * lease expired are adopted by the leader, so only one node scans for them,
+ * and each lease change increments a token that fences off writes from the
+ * previous owner.
+ * <p>
+ * With the cluster disabled every project is owned locally and this class
+ * never touches the database.
+ */
+@Service
+public class ClusterCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    private static final String UPSERT_MEMBER = "INSERT INTO \"cluster_members\" (\"node_id\", \"url\", " +
+        "\"heartbeat_at\") VALUES (?, ?, ?) ON CONFLICT (\"node_id\") DO UPDATE SET \"url\" = excluded.\"url\", " +
+        "\"heartbeat_at\" = excluded.\"heartbeat_at\"";
+    private static final String SELECT_LEADER = "SELECT MIN(\"node_id\") FROM \"cluster_members\" " +
+        "WHERE \"heartbeat_at\" >= ?";
+    private static final String DELETE_MEMBER = "DELETE FROM \"cluster_members\" WHERE \"node_id\" = ?";
+
+    // Takes the lease when it is free, expired or already ours; the token
+    // only moves when the owner changes
+    private static final String ACQUIRE_LEASE = "INSERT INTO \"project_leases\" (\"project_id\", \"node_id\", " +
+        "\"token\", \"expires_at\") VALUES (?, ?, 1, ?) ON CONFLICT (\"project_id\") DO UPDATE SET " +
+        "\"token\" = CASE WHEN \"node_id\" = excluded.\"node_id\" THEN \"token\" ELSE \"token\" + 1 END, " +
+        "\"node_id\" = excluded.\"node_id\", \"expires_at\" = excluded.\"expires_at\" " +
+        "WHERE \"node_id\" = excluded.\"node_id\" OR \"expires_at\" < ?";
+    private static final String SELECT_TOKEN = "SELECT \"token\" FROM \"project_leases\" WHERE \"project_id\" = ?";
+    private static final String SELECT_OWNER_URL = "SELECT m.\"url\" FROM \"project_leases\" l " +
+        "JOIN \"cluster_members\" m ON m.\"node_id\" = l.\"node_id\" WHERE l.\"project_id\" = ?";
+    private static final String RENEW_LEASES = "UPDATE \"project_leases\" SET \"expires_at\" = ? WHERE \"node_id\" = ?";
+    private static final String SELECT_HELD = "SELECT \"project_id\" FROM \"project_leases\" WHERE \"node_id\" = ?";
+    private static final String SELECT_ORPHANED = "SELECT l.\"project_id\" FROM \"project_leases\" l " +
+        "JOIN \"projects\" p ON p.\"id\" = l.\"project_id\" " +
+        "WHERE l.\"expires_at\" < ? AND p.\"current_state\" <> 'STOPPED' LIMIT 500";
+    private static final String RELEASE_LEASES = "DELETE FROM \"project_leases\" WHERE \"node_id\" = ?";
+
+    /**
+     * Told when this node gains or loses a project without asking for it.
+     */
+    public interface LeaseListener {
+
+        void leaseLost(Long projectId);
+
+        void leaseAdopted(Long projectId);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+    private final String nodeUrl;
+    private final long leaseMillis;
+
+    // Project id -> token of the leases this node holds
+    private final ConcurrentMap<Long, Long> leases = new ConcurrentHashMap<>();
+    private final List<LeaseListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long leasesValidUntil;
+    private volatile boolean leader = true;
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ClusterCoordinator(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.cluster.enabled:false}") boolean enabled,
+                              @Value("${app.cluster.node-id:}") String nodeId,
+                              @Value("${app.cluster.node-url:http://localhost:${server.port:8080}}") String nodeUrl,
+                              @Value("${app.cluster.lease-ms:6000}") long leaseMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString().substring(0, 8);
+        this.nodeUrl = nodeUrl;
+        this.leaseMillis = leaseMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        beat();
+        log.info("Joined the cluster as node {} at {}{}", nodeId, nodeUrl, leader ? ", leading" : "");
+        heartbeat.scheduleWithFixedDelay(this::beatSafely, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Whether this node should run the jobs only one node may run at a time.
+     * Always true outside a cluster.
+     */
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public void addListener(LeaseListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Makes sure this node owns the project's timer and returns the lease
+     * token its writes must carry.
+     *
+     * @throws ProjectOwnedElsewhereException if another live node owns it
+     */
+    public long acquire(Long projectId) {
+        if (!enabled) {
+            return 0L;
+        }
+        long now = System.currentTimeMillis();
+        Long held = leases.get(projectId);
+        // Renewed leases stay valid for a whole lease after the last
+        // heartbeat; stop trusting them well before that runs out
+        if (held != null && now < leasesValidUntil - leaseMillis / 3) {
+            return held;
+        }
+
+        Long token = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(ACQUIRE_LEASE, projectId, nodeId, now + leaseMillis, now) == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(SELECT_TOKEN, Long.class, projectId);
+        });
+        if (token == null) {
+            leases.remove(projectId);
+            List<String> owner = jdbcTemplate.queryForList(SELECT_OWNER_URL, String.class, projectId);
+            throw new ProjectOwnedElsewhereException(projectId, owner.isEmpty() ? null : owner.get(0));
+        }
+        leases.put(projectId, token);
+        return token;
+    }
+
+    /**
+     * Forgets a lease this node found it no longer holds.
+     */
+    public void leaseLost(Long projectId) {
+        leases.remove(projectId);
+    }
+
+    private void beatSafely() {
+        try {
+            beat();
+        } catch (RuntimeException e) {
+            log.warn("Cluster heartbeat failed", e);
+        }
+    }
+
+    private void beat() {
+        long now = System.currentTimeMillis();
+        // In one transaction on the writer connection, so no lease of ours
+        // can be taken between the renewal and the comparison
+        Set<Long> lost = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(UPSERT_MEMBER, nodeId, nodeUrl, now);
+            int renewed = jdbcTemplate.update(RENEW_LEASES, now + leaseMillis, nodeId);
+            Set<Long> missing = new HashSet<>();
+            if (renewed != leases.size()) {
+                Set<Long> held = new HashSet<>(jdbcTemplate.queryForList(SELECT_HELD, Long.class, nodeId));
+                for (Long projectId : leases.keySet()) {
+                    if (!held.contains(projectId)) {
+                        missing.add(projectId);
+                    }
+                }
+            }
+            return missing;
+        });
+        leasesValidUntil = now + leaseMillis;
+        leader = nodeId.equals(jdbcTemplate.queryForObject(SELECT_LEADER, String.class, now - leaseMillis));
+
+        for (Long projectId : lost) {
+            log.warn("Lost the lease on project {} to another node", projectId);
+            leases.remove(projectId);
+            for (LeaseListener listener : listeners) {
+                listener.leaseLost(projectId);
+            }
+        }
+
+        if (!leader) {
+            return;
+        }
+        // Running timers of nodes that went away; only the leader looks, so
+        // the scan runs once per heartbeat however many nodes there are
+        for (Long projectId : jdbcTemplate.queryForList(SELECT_ORPHANED, Long.class, now)) {
+            try {
+                acquire(projectId);
+            } catch (ProjectOwnedElsewhereException e) {
+                continue;
+            }
+            log.info("Adopted the running timer of project {}", projectId);
+            for (LeaseListener listener : listeners) {
+                listener.leaseAdopted(projectId);
+            }
+        }
+    }
+
+    // Runs after TimerEngine has drained its writes, since it depends on
+    // this bean
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        heartbeat.shutdownNow();
+        heartbeat.awaitTermination(5, TimeUnit.SECONDS);
+        if (!enabled) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(RELEASE_LEASES, nodeId);
+                jdbcTemplate.update(DELETE_MEMBER, nodeId);
+            });
+            log.info("Left the cluster, releasing {} project leases", leases.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to release project leases; they expire in {} ms", leaseMillis, e);
+        }
+    }
+}
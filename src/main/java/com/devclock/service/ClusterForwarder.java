@@ -0,0 +1,177 @@
+package com.devclock.service;
+
+import com.devclock.model.BulkTimerResult;
+import com.devclock.model.Project;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays timer operations on the node that owns the projects, on behalf of
+ * the original user. Forwarded requests go to the {@code /api/cluster}
+ * endpoints, which only accept them signed with the shared
+ * {@code app.cluster.secret}: an HMAC-SHA256 over the time, path, user and
+ * body, so a client cannot pose as another node or replay an old request.
+ */
+@Service
+public class ClusterForwarder {
+
+    public static final String USERNAME_HEADER = "X-Username";
+    public static final String TIMESTAMP_HEADER = "X-Cluster-Timestamp";
+    public static final String SIGNATURE_HEADER = "X-Cluster-Signature";
+    public static final String TOGGLE_ALL_PATH = "/api/cluster/projects/timers";
+
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+    private static final long SIGNATURE_MAX_SKEW_MS = 30_000;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec secret;
+
+    @Autowired
+    public ClusterForwarder(RestTemplateBuilder restTemplateBuilder,
+                            ObjectMapper objectMapper,
+                            ClusterCoordinator clusterCoordinator,
+                            @Value("${app.cluster.secret:}") String secret) {
+        this.restTemplate = restTemplateBuilder
+            .setConnectTimeout(Duration.ofSeconds(2))
+            .setReadTimeout(Duration.ofSeconds(10))
+            .build();
+        this.objectMapper = objectMapper;
+        if (!StringUtils.hasText(secret)) {
+            if (clusterCoordinator.isEnabled()) {
+                throw new IllegalStateException("app.cluster.secret must be set when app.cluster.enabled=true");
+            }
+            this.secret = null;
+        } else {
+            this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), SIGNATURE_ALGORITHM);
+        }
+    }
+
+    public Project toggle(ProjectOwnedElsewhereException owner, Project.TimerState newState, String username) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("state", newState);
+        return exchange(ownerUrl(owner), togglePath(owner.getProjectId()), body, username, Project.class);
+    }
+
+    public List<BulkTimerResult> toggleAll(String ownerUrl, List<Long> projectIds, Project.TimerState newState,
+                                           String username) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("projectIds", projectIds);
+        body.put("state", newState);
+        return Arrays.asList(exchange(ownerUrl, TOGGLE_ALL_PATH, body, username, BulkTimerResult[].class));
+    }
+
+    public static String togglePath(Long projectId) {
+        return "/api/cluster/projects/" + projectId + "/timer";
+    }
+
+    /**
+     * Whether a request to {@code path} was signed by a node sharing this
+     * node's secret within the last {@value #SIGNATURE_MAX_SKEW_MS} ms.
+     */
+    public boolean verify(String path, HttpHeaders headers, byte[] body) {
+        String username = headers.getFirst(USERNAME_HEADER);
+        String timestamp = headers.getFirst(TIMESTAMP_HEADER);
+        String signature = headers.getFirst(SIGNATURE_HEADER);
+        if (secret == null || username == null || timestamp == null || signature == null) {
+            return false;
+        }
+        long signedAt;
+        try {
+            signedAt = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() - signedAt) > SIGNATURE_MAX_SKEW_MS) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(signedAt, path, username, body).getBytes(StandardCharsets.US_ASCII),
+            signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(long timestamp, String path, String username, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(secret);
+            mac.update((timestamp + "\n" + path + "\n" + username + "\n").getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign a cluster request", e);
+        }
+    }
+
+    private <T> T exchange(String ownerUrl, String path, Object body, String username, Class<T> type) {
+        if (secret == null) {
+            throw new IllegalStateException("No app.cluster.secret to sign the forwarded request with");
+        }
+        String url = ownerUrl + path;
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize a forwarded request", e);
+        }
+        long timestamp = System.currentTimeMillis();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(USERNAME_HEADER, username);
+        headers.set(TIMESTAMP_HEADER, Long.toString(timestamp));
+        headers.set(SIGNATURE_HEADER, sign(timestamp, path, username, payload));
+        try {
+            return restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), type).getBody();
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                throw new IllegalArgumentException(errorMessage(e));
+            }
+            throw new IllegalStateException("Owning node answered " + e.getStatusCode() + " for " + url, e);
+        } catch (ResourceAccessException e) {
+            throw new IllegalStateException("Owning node is unreachable at " + url, e);
+        }
+    }
+
+    private String errorMessage(HttpStatusCodeException e) {
+        try {
+            JsonNode body = objectMapper.readTree(e.getResponseBodyAsByteArray());
+            if (body != null && body.hasNonNull("error")) {
+                return body.get("error").asText();
+            }
+        } catch (IOException ignored) {
+            // Not JSON; nothing more specific to report
+        }
+        return "Project not found";
+    }
+
+    private static String ownerUrl(ProjectOwnedElsewhereException owner) {
+        if (owner.getOwnerUrl() == null) {
+            throw new IllegalStateException(owner.getMessage());
+        }
+        return owner.getOwnerUrl();
+    }
+}
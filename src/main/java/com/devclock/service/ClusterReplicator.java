@@ -0,0 +1,139 @@
+package com.devclock.service;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Keeps the node-local views of the projects in step across a cluster.
+ * Every committed change is announced on the {@link ClusterBus}; changes
+ * from other nodes refresh this node's snapshot cache, search index and
+ * timers, and go out to this node's STOMP subscribers through the usual
+ * coalescing publisher.
+ */
+@Service
+public class ClusterReplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterReplicator.class);
+
+    public static class Change {
+        private ProjectChangeEvent.Type type;
+        private Long projectId;
+        private Project previous;
+        private Project project;
+
+        public Change() {}
+
+        Change(ProjectChangeEvent.Type type, Long projectId, Project previous, Project project) {
+            this.type = type;
+            this.projectId = projectId;
+            this.previous = previous;
+            this.project = project;
+        }
+
+        public ProjectChangeEvent.Type getType() {
+            return type;
+        }
+
+        public void setType(ProjectChangeEvent.Type type) {
+            this.type = type;
+        }
+
+        public Long getProjectId() {
+            return projectId;
+        }
+
+        public void setProjectId(Long projectId) {
+            this.projectId = projectId;
+        }
+
+        public Project getPrevious() {
+            return previous;
+        }
+
+        public void setPrevious(Project previous) {
+            this.previous = previous;
+        }
+
+        public Project getProject() {
+            return project;
+        }
+
+        public void setProject(Project project) {
+            this.project = project;
+        }
+    }
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProjectEventPublisher projectEventPublisher;
+
+    @Autowired
+    private ProjectSnapshotCache projectSnapshotCache;
+
+    @Autowired
+    private ProjectSearchIndex projectSearchIndex;
+
+    @Autowired
+    private TimerEngine timerEngine;
+
+    @PostConstruct
+    public void subscribe() {
+        if (clusterCoordinator.isEnabled()) {
+            clusterBus.subscribe(this::receive);
+        }
+    }
+
+    /**
+     * Tells the other nodes about a change committed here. {@code project}
+     * is {@code null} for a deletion; {@code previous}, when known, is the
+     * project before the change.
+     */
+    void announce(Long projectId, Project previous, Project project, boolean created) {
+        if (!clusterCoordinator.isEnabled()) {
+            return;
+        }
+        ProjectChangeEvent.Type type = project == null ? ProjectChangeEvent.Type.DELETED
+            : created ? ProjectChangeEvent.Type.CREATED
+            : ProjectChangeEvent.Type.UPDATED;
+        try {
+            clusterBus.publish(objectMapper.writeValueAsString(new Change(type, projectId, previous, project)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize project change", e);
+        }
+    }
+
+    private void receive(String message) {
+        try {
+            Change change = objectMapper.readValue(message, Change.class);
+            Project project = change.getProject();
+            if (change.getType() == ProjectChangeEvent.Type.DELETED) {
+                timerEngine.remove(change.getProjectId());
+                projectSearchIndex.remove(change.getProjectId());
+            } else {
+                timerEngine.refreshDescriptor(project);
+                projectSearchIndex.put(project);
+            }
+            projectSnapshotCache.invalidate();
+            projectEventPublisher.replicated(change.getProjectId(), change.getPrevious(), project,
+                change.getType() == ProjectChangeEvent.Type.CREATED);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Failed to apply a project change from another node", e);
+        }
+    }
+}
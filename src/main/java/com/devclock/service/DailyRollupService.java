@@ -0,0 +1,243 @@
+package com.devclock.service;
+
+import com.devclock.model.DailyRollup;
+import com.devclock.model.TimelineEntry;
+import com.devclock.repository.DailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps {@code daily_rollups} up to date as sessions end. Every STOP_DEV and
+ * STOP_WAIT entry is split at local midnight and added to the rows for the
+ * days it covers, in the same transaction that inserts the entry, so reports
+ * read one row per day, project, user and category instead of scanning the
+ * timeline. Sessions are credited to the user who ended them, as recorded
+ * on the stop entry.
+ */
+@Service
+public class DailyRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyRollupService.class);
+
+    private static final String UPSERT = "INSERT INTO \"daily_rollups\" " +
+        "(\"day\", \"project_id\", \"username\", \"category\", \"milliseconds\") VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (\"day\", \"project_id\", \"username\", \"category\") " +
+        "DO UPDATE SET \"milliseconds\" = \"milliseconds\" + excluded.\"milliseconds\"";
+
+    private static final String SELECT = "SELECT \"day\", \"project_id\", \"username\", \"category\", " +
+        "\"milliseconds\" FROM \"daily_rollups\" WHERE \"day\" >= ? AND \"day\" <= ?";
+    private static final String ORDER_BY = " ORDER BY \"day\", \"project_id\", \"username\", \"category\"";
+
+    private static final String SELECT_STOP_ENTRIES = "SELECT \"project_id\", \"event_type\", \"timestamp\", " +
+        "\"duration_ms\", \"username\" FROM \"timeline_entries\" " +
+        "WHERE \"event_type\" IN ('STOP_DEV', 'STOP_WAIT') AND \"duration_ms\" > 0";
+
+    private static final int MAX_REPORT_DAYS = 366;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DailyRollupRepository dailyRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTransaction;
+    // The zone entry timestamps are stored in, and days are split in
+    private final ZoneId zone;
+
+    private static class Key {
+        private final LocalDate day;
+        private final Long projectId;
+        private final String username;
+        private final DailyRollup.Category category;
+
+        private Key(LocalDate day, Long projectId, String username, DailyRollup.Category category) {
+            this.day = day;
+            this.projectId = projectId;
+            this.username = username;
+            this.category = category;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return day.equals(key.day) && projectId.equals(key.projectId)
+                && username.equals(key.username) && category == key.category;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(day, projectId, username, category);
+        }
+    }
+
+    @Autowired
+    public DailyRollupService(JdbcTemplate jdbcTemplate,
+                              DailyRollupRepository dailyRollupRepository,
+                              PlatformTransactionManager transactionManager) {
+        this(jdbcTemplate, dailyRollupRepository, transactionManager, ZoneId.systemDefault());
+    }
+
+    DailyRollupService(JdbcTemplate jdbcTemplate,
+                       DailyRollupRepository dailyRollupRepository,
+                       PlatformTransactionManager transactionManager,
+                       ZoneId zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.zone = zone;
+    }
+
+    /**
+     * Builds the rollups from the timeline once, when the table is new and
+     * sessions have already been recorded.
+     */
+    @PostConstruct
+    public void backfill() {
+        if (dailyRollupRepository.count() > 0) {
+            return;
+        }
+        Integer added = transactionTemplate.execute(status -> {
+            Map<Key, Long> increments = new LinkedHashMap<>();
+            jdbcTemplate.query(SELECT_STOP_ENTRIES, resultSet -> {
+                TimelineEntry entry = new TimelineEntry();
+                entry.setProjectId(resultSet.getLong("project_id"));
+                entry.setEventType(resultSet.getString("event_type"));
+                entry.setTimestamp(new Timestamp(resultSet.getLong("timestamp")).toLocalDateTime());
+                entry.setDurationMs(resultSet.getLong("duration_ms"));
+                entry.setUsername(resultSet.getString("username"));
+                accumulate(entry, increments);
+            });
+            upsert(increments);
+            return increments.size();
+        });
+        if (added != null && added > 0) {
+            log.info("Built {} daily rollups from the existing timeline", added);
+        }
+    }
+
+    /**
+     * Adds the sessions ended by these entries to the rollups. Must be called
+     * inside the transaction that writes the entries.
+     */
+    void record(List<TimelineEntry> entries) {
+        Map<Key, Long> increments = new LinkedHashMap<>();
+        for (TimelineEntry entry : entries) {
+            accumulate(entry, increments);
+        }
+        upsert(increments);
+    }
+
+    /**
+     * Returns the rollups for every day from {@code from} to {@code to}
+     * inclusive, optionally restricted to one project or one user.
+     */
+    public List<DailyRollup> report(LocalDate from, LocalDate to, Long projectId, String username) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("'from' and 'to' are required");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        if (from.plusDays(MAX_REPORT_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Reports cover at most " + MAX_REPORT_DAYS + " days");
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT);
+        List<Object> args = new ArrayList<>();
+        args.add(dayMillis(from));
+        args.add(dayMillis(to));
+        if (projectId != null) {
+            sql.append(" AND \"project_id\" = ?");
+            args.add(projectId);
+        }
+        if (username != null) {
+            sql.append(" AND \"username\" = ?");
+            args.add(username);
+        }
+        sql.append(ORDER_BY);
+
+        return readTransaction.execute(status -> jdbcTemplate.query(sql.toString(), (resultSet, rowNum) ->
+            new DailyRollup(
+                new Date(resultSet.getLong("day")).toLocalDate(),
+                resultSet.getLong("project_id"),
+                resultSet.getString("username"),
+                DailyRollup.Category.valueOf(resultSet.getString("category")),
+                resultSet.getLong("milliseconds")),
+            args.toArray()));
+    }
+
+    private void accumulate(TimelineEntry entry, Map<Key, Long> increments) {
+        DailyRollup.Category category;
+        if ("STOP_DEV".equals(entry.getEventType())) {
+            category = DailyRollup.Category.DEV;
+        } else if ("STOP_WAIT".equals(entry.getEventType())) {
+            category = DailyRollup.Category.WAIT;
+        } else {
+            return;
+        }
+        long remaining = entry.getDurationMs() != null ? entry.getDurationMs() : 0;
+        if (remaining <= 0) {
+            return;
+        }
+        String username = entry.getUsername() != null ? entry.getUsername() : "system";
+
+        // Whole days before the last one get the time up to their midnight;
+        // the last day gets the remainder so the parts add up to the session.
+        // Durations are elapsed time, so the split is done on instants in
+        // the zone timestamps are stored in, which keeps a day that gained
+        // or lost an hour to daylight saving from being credited with the
+        // wrong share.
+        LocalDate endDay = entry.getTimestamp().toLocalDate();
+        Instant start = entry.getTimestamp().atZone(zone).toInstant().minusMillis(remaining);
+        LocalDate day = start.atZone(zone).toLocalDate();
+        while (day.isBefore(endDay)) {
+            Instant midnight = day.plusDays(1).atStartOfDay(zone).toInstant();
+            long millis = Math.min(remaining, Duration.between(start, midnight).toMillis());
+            increments.merge(new Key(day, entry.getProjectId(), username, category), millis, Long::sum);
+            remaining -= millis;
+            start = midnight;
+            day = day.plusDays(1);
+        }
+        if (remaining > 0) {
+            increments.merge(new Key(endDay, entry.getProjectId(), username, category), remaining, Long::sum);
+        }
+    }
+
+    private void upsert(Map<Key, Long> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(increments.size());
+        for (Map.Entry<Key, Long> increment : increments.entrySet()) {
+            Key key = increment.getKey();
+            rows.add(new Object[] {dayMillis(key.day), key.projectId, key.username, key.category.name(),
+                increment.getValue()});
+        }
+        jdbcTemplate.batchUpdate(UPSERT, rows);
+    }
+
+    // Stored the way Hibernate binds a LocalDate through sqlite-jdbc
+    private static long dayMillis(LocalDate day) {
+        return Date.valueOf(day).getTime();
+    }
+}
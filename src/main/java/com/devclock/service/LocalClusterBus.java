@@ -0,0 +1,67 @@
+package com.devclock.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link ClusterBus} between application contexts in the same JVM, the
+ * stand-in broker for running several nodes in one process. With a single
+ * node it has nobody to deliver to.
+ */
+@Service
+@ConditionalOnProperty(name = "app.cluster.bus", havingValue = "local", matchIfMissing = true)
+public class LocalClusterBus implements ClusterBus {
+
+    private static final List<LocalClusterBus> NODES = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService delivery = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void join() {
+        NODES.add(this);
+    }
+
+    @Override
+    public void publish(String message) {
+        for (LocalClusterBus node : NODES) {
+            if (node != this) {
+                node.deliver(message);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    private void deliver(String message) {
+        delivery.execute(() -> {
+            for (Consumer<String> listener : listeners) {
+                listener.accept(message);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void leave() throws InterruptedException {
+        NODES.remove(this);
+        delivery.shutdown();
+        delivery.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
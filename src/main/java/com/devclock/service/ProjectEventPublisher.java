@@ -0,0 +1,449 @@
+package com.devclock.service;
+
+import com.devclock.config.StompUser;
+import com.devclock.model.BroadcastStats;
+import com.devclock.model.Project;
+import com.devclock.model.ProjectChangeEvent;
+import com.devclock.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes project changes as per-user delta events on
+ * {@code /user/queue/project-changes}. Changes are coalesced: a flush runs
+ * once no new change has arrived for the coalesce window, but never later
+ * than the max delay after the first pending change. Each flush sends every
+ * subscribed user at most one frame holding the merged events they can see.
+ * <p>
+ * Each user's stream carries its own contiguous sequence number; a client
+ * that sees a gap resyncs through {@code GET /api/projects/sync}. Sequences
+ * are kept per node and start over when it restarts, so events and syncs
+ * also carry a stream id naming this run of this node; a client only
+ * compares sequences within one stream.
+ * <p>
+ * In a cluster, local changes are also announced through
+ * {@link ClusterReplicator}, and other nodes' changes come back in through
+ * {@link #replicated}, so each node serves its own connected users. Timer
+ * changes are the exception: {@link TimerEngine} announces them once their
+ * rows have committed.
+ */
+@Service
+public class ProjectEventPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectEventPublisher.class);
+
+    public static final String DESTINATION = "/queue/project-changes";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private Map<Long, PendingChange> pending = new LinkedHashMap<>();
+    private long firstPendingNanos;
+    private long lastPendingNanos;
+
+    // Only touched from the broadcast thread
+    private final Map<Long, Project> lastPublished = new HashMap<>();
+
+    private final ConcurrentMap<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final String stream = UUID.randomUUID().toString();
+
+    private final AtomicLong updatesReceived = new AtomicLong();
+    private final AtomicLong updatesMerged = new AtomicLong();
+    private final AtomicLong batchesPublished = new AtomicLong();
+    private final AtomicLong framesPublished = new AtomicLong();
+    private final AtomicLong eventsPublished = new AtomicLong();
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private SimpUserRegistry userRegistry;
+
+    @Value("${app.broadcast.coalesce-window-ms:75}")
+    private long coalesceWindowMs;
+
+    @Value("${app.broadcast.max-delay-ms:250}")
+    private long maxDelayMs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Lazy
+    private ClusterReplicator clusterReplicator;
+
+    private Timer publishTimer;
+    private Timer serializeTimer;
+    private DistributionSummary payloadBytes;
+
+    private static class PendingChange {
+        private Project current;
+        private boolean created;
+        // Stands in for lastPublished when this node has not seen the project yet
+        private Project before;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        publishTimer = Timer.builder("devclock.broadcast.publish")
+            .description("Time to diff, serialize and hand one coalesced batch to the broker")
+            .register(meterRegistry);
+        serializeTimer = Timer.builder("devclock.broadcast.serialize")
+            .description("Time to serialize one user's frame")
+            .register(meterRegistry);
+        payloadBytes = DistributionSummary.builder("devclock.broadcast.payload")
+            .description("Size of one user's frame")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        Gauge.builder("devclock.websocket.users", userRegistry, SimpUserRegistry::getUserCount)
+            .description("Connected WebSocket users")
+            .register(meterRegistry);
+        Gauge.builder("devclock.broadcast.subscribers", userRegistry,
+                registry -> registry.findSubscriptions(subscription ->
+                    subscription.getDestination().endsWith(DESTINATION)).size())
+            .description("Subscriptions to project changes")
+            .register(meterRegistry);
+        Gauge.builder("devclock.broadcast.pending", this, publisher -> publisher.pendingCount())
+            .description("Project changes waiting for the next flush")
+            .register(meterRegistry);
+
+        FunctionCounter.builder("devclock.broadcast.updates.received", updatesReceived, AtomicLong::get)
+            .register(meterRegistry);
+        FunctionCounter.builder("devclock.broadcast.updates.merged", updatesMerged, AtomicLong::get)
+            .register(meterRegistry);
+        FunctionCounter.builder("devclock.broadcast.frames", framesPublished, AtomicLong::get)
+            .register(meterRegistry);
+        FunctionCounter.builder("devclock.broadcast.events", eventsPublished, AtomicLong::get)
+            .register(meterRegistry);
+    }
+
+    public void projectCreated(Project project) {
+        Project snapshot = project.copy();
+        AfterCommit.run(() -> {
+            enqueue(snapshot.getId(), null, snapshot, true);
+            clusterReplicator.announce(snapshot.getId(), null, snapshot, true);
+        });
+    }
+
+    public void projectUpdated(Project project) {
+        projectUpdated(null, project);
+    }
+
+    /**
+     * Queues an update that may change who can see the project;
+     * {@code before} is the project as it was, so users who lose sight of
+     * it get a DELETED even if nothing was published for it since startup.
+     */
+    public void projectUpdated(Project before, Project project) {
+        Project previous = before != null ? before.copy() : null;
+        Project snapshot = project.copy();
+        AfterCommit.run(() -> {
+            enqueue(snapshot.getId(), previous, snapshot, false);
+            clusterReplicator.announce(snapshot.getId(), previous, snapshot, false);
+        });
+    }
+
+    /**
+     * Queues timer changes for this node's users, all in the same batch.
+     * They are not announced to the cluster here: {@link TimerEngine}
+     * announces them from the writer thread once their rows commit.
+     */
+    public void timersUpdated(List<Project> projects) {
+        List<Project> snapshots = new ArrayList<>(projects.size());
+        for (Project project : projects) {
+            snapshots.add(project.copy());
+        }
+        enqueueAll(snapshots);
+    }
+
+    /**
+     * Queues a deletion; {@code before} is the project as it was, so only
+     * the users who could see it get a DELETED.
+     */
+    public void projectDeleted(Project before) {
+        Project previous = before.copy();
+        AfterCommit.run(() -> {
+            enqueue(previous.getId(), previous, null, false);
+            clusterReplicator.announce(previous.getId(), previous, null, false);
+        });
+    }
+
+    /**
+     * Queues a change another cluster node committed, for the users
+     * connected to this one.
+     */
+    void replicated(Long projectId, Project before, Project current, boolean created) {
+        enqueue(projectId, before, current, created);
+    }
+
+    public long currentSequence(String username) {
+        return sequenceFor(username).get();
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public BroadcastStats getStats() {
+        return new BroadcastStats(updatesReceived.get(), updatesMerged.get(), batchesPublished.get(),
+            framesPublished.get(), eventsPublished.get());
+    }
+
+    private synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private synchronized void enqueueAll(List<Project> projects) {
+        for (Project project : projects) {
+            enqueue(project.getId(), null, project, false);
+        }
+    }
+
+    private synchronized void enqueue(Long projectId, Project before, Project current, boolean created) {
+        updatesReceived.incrementAndGet();
+
+        PendingChange change = pending.get(projectId);
+        if (change == null) {
+            change = new PendingChange();
+            pending.put(projectId, change);
+        } else {
+            updatesMerged.incrementAndGet();
+        }
+        change.current = current;
+        change.created |= created;
+        if (change.before == null) {
+            change.before = before;
+        }
+
+        long now = System.nanoTime();
+        lastPendingNanos = now;
+        if (firstPendingNanos == 0L) {
+            firstPendingNanos = now;
+            scheduler.schedule(this::flushWhenDue, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushWhenDue() {
+        Map<Long, PendingChange> batch;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long due = Math.min(lastPendingNanos + TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs),
+                firstPendingNanos + TimeUnit.MILLISECONDS.toNanos(maxDelayMs));
+            if (now < due) {
+                scheduler.schedule(this::flushWhenDue, due - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+            batch = takePending();
+        }
+        publishSafely(batch);
+    }
+
+    private Map<Long, PendingChange> takePending() {
+        Map<Long, PendingChange> batch = pending;
+        pending = new LinkedHashMap<>();
+        firstPendingNanos = 0L;
+        return batch;
+    }
+
+    private void publishSafely(Map<Long, PendingChange> batch) {
+        try {
+            if (!batch.isEmpty()) {
+                publishTimer.record(() -> publish(batch));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to publish {} project changes", batch.size(), e);
+        }
+    }
+
+    private void publish(Map<Long, PendingChange> batch) {
+        batchesPublished.incrementAndGet();
+
+        List<StompUser> recipients = new ArrayList<>();
+        for (SimpUser simpUser : userRegistry.getUsers()) {
+            Principal principal = simpUser.getPrincipal();
+            if (principal instanceof StompUser) {
+                recipients.add((StompUser) principal);
+            }
+        }
+
+        Map<String, List<ProjectChangeEvent>> frames = new LinkedHashMap<>();
+        for (Map.Entry<Long, PendingChange> entry : batch.entrySet()) {
+            Long projectId = entry.getKey();
+            Project current = entry.getValue().current;
+            boolean created = entry.getValue().created;
+
+            Project previous = current != null ? lastPublished.put(projectId, current) : lastPublished.remove(projectId);
+            if (previous == null) {
+                previous = entry.getValue().before;
+            }
+            if (previous == null && current == null) {
+                // Created and deleted within the batch, or nothing is known
+                // about who could see it
+                continue;
+            }
+            Map<String, Object> currentFields = current != null ? fields(current) : null;
+            Map<String, Object> delta = previous != null && currentFields != null
+                ? diff(fields(previous), currentFields)
+                : currentFields;
+            // Rendered at most once per batch however many users receive them
+            String currentJson = null;
+            String deltaJson = null;
+
+            for (StompUser recipient : recipients) {
+                User user = recipient.toUser();
+                boolean wasVisible = previous != null && previous.isVisibleTo(user);
+                boolean visible = current != null && current.isVisibleTo(user);
+
+                if (visible && (created || !wasVisible)) {
+                    if (currentJson == null) {
+                        currentJson = toJson(currentFields);
+                    }
+                    addEvent(frames, user, ProjectChangeEvent.Type.CREATED, projectId, currentJson);
+                } else if (visible) {
+                    if (!delta.isEmpty()) {
+                        if (deltaJson == null) {
+                            deltaJson = toJson(delta);
+                        }
+                        addEvent(frames, user, ProjectChangeEvent.Type.UPDATED, projectId, deltaJson);
+                    }
+                } else if (wasVisible) {
+                    addEvent(frames, user, ProjectChangeEvent.Type.DELETED, projectId, null);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<ProjectChangeEvent>> frame : frames.entrySet()) {
+            send(frame.getKey(), frame.getValue());
+            framesPublished.incrementAndGet();
+            eventsPublished.addAndGet(frame.getValue().size());
+        }
+    }
+
+    // Serialized here rather than by the broker's converter so the time and
+    // size of each frame can be measured.
+    private void send(String username, List<ProjectChangeEvent> events) {
+        long serverTime = System.currentTimeMillis();
+        for (ProjectChangeEvent event : events) {
+            event.setServerTime(serverTime);
+        }
+        long start = System.nanoTime();
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(events);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize project changes", e);
+        }
+        serializeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        payloadBytes.record(payload.length);
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        String destination = messagingTemplate.getUserDestinationPrefix()
+            + StringUtils.replace(username, "/", "%2F") + DESTINATION;
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+
+    private void addEvent(Map<String, List<ProjectChangeEvent>> frames, User user,
+                          ProjectChangeEvent.Type type, Long projectId, String changes) {
+        long sequence = sequenceFor(user.getUsername()).incrementAndGet();
+        frames.computeIfAbsent(user.getUsername(), key -> new ArrayList<>())
+            .add(new ProjectChangeEvent(type, stream, sequence, projectId, changes));
+    }
+
+    private String toJson(Map<String, Object> changes) {
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize project changes", e);
+        }
+    }
+
+    private AtomicLong sequenceFor(String username) {
+        return sequences.computeIfAbsent(username, key -> new AtomicLong());
+    }
+
+    private Map<String, Object> fields(Project project) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", project.getId());
+        fields.put("name", project.getName());
+        fields.put("description", project.getDescription());
+        fields.put("devTimeMs", project.getDevTimeMs());
+        fields.put("waitTimeMs", project.getWaitTimeMs());
+        fields.put("devTimeSeconds", project.getDevTimeSeconds());
+        fields.put("waitTimeSeconds", project.getWaitTimeSeconds());
+        fields.put("currentState", project.getCurrentState());
+        fields.put("lastStateChange", project.getLastStateChange());
+        fields.put("lastStateChangeEpochMs", project.getLastStateChangeEpochMs());
+        fields.put("createdAt", project.getCreatedAt());
+        fields.put("updatedAt", project.getUpdatedAt());
+        fields.put("assignedUserUsername", project.getAssignedUserUsername());
+        fields.put("assignedToAll", project.getAssignedToAll());
+        return fields;
+    }
+
+    private Map<String, Object> diff(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : current.entrySet()) {
+            if (!Objects.equals(previous.get(field.getKey()), field.getValue())) {
+                changes.put(field.getKey(), field.getValue());
+            }
+        }
+        return changes;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        Map<Long, PendingChange> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        publishSafely(batch);
+    }
+}
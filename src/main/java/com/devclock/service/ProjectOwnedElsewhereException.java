@@ -0,0 +1,28 @@
+package com.devclock.service;
+
+/**
+ * Thrown when a timer operation reaches a node that does not own the
+ * project; the request belongs on {@link #getOwnerUrl()}.
+ */
+public class ProjectOwnedElsewhereException extends RuntimeException {
+
+    private final Long projectId;
+    private final String ownerUrl;
+
+    public ProjectOwnedElsewhereException(Long projectId, String ownerUrl) {
+        super("Project " + projectId + " is owned by " + (ownerUrl != null ? ownerUrl : "an unknown node"));
+        this.projectId = projectId;
+        this.ownerUrl = ownerUrl;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    /**
+     * Base URL of the owning node, or {@code null} if it has already left.
+     */
+    public String getOwnerUrl() {
+        return ownerUrl;
+    }
+}
@@ -0,0 +1,317 @@
+package com.devclock.service;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+import com.devclock.model.User;
+import com.devclock.repository.ProjectRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over project names and descriptions. Every word is indexed
+ * under each of its prefixes (edge n-grams) up to {@link #MAX_GRAM} letters,
+ * so a query word is one map lookup whatever the catalog size, and a
+ * multi-word query only walks the shortest matching posting list.
+ * <p>
+ * Matches are ranked by where the words were found: a whole word in the name
+ * scores highest, then a prefix in the name, a whole word in the
+ * description and a prefix in the description. Ties go to newer projects.
+ */
+@Service
+public class ProjectSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectSearchIndex.class);
+
+    static final int MAX_GRAM = 12;
+    static final int MAX_QUERY_WORDS = 8;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int NAME_WORD = 8;
+    private static final int NAME_PREFIX = 4;
+    private static final int DESCRIPTION_WORD = 2;
+    private static final int DESCRIPTION_PREFIX = 1;
+
+    private static final Comparator<Hit> RANK = Comparator.comparingInt((Hit hit) -> hit.score)
+        .thenComparingLong(hit -> hit.id)
+        .reversed();
+
+    private static class Document {
+        private final long id;
+        private final String assignedUserUsername;
+        private final boolean assignedToAll;
+        private final Set<String> words;
+
+        private Document(long id, String assignedUserUsername, boolean assignedToAll, Set<String> words) {
+            this.id = id;
+            this.assignedUserUsername = assignedUserUsername;
+            this.assignedToAll = assignedToAll;
+            this.words = words;
+        }
+
+        private boolean isVisibleTo(User user) {
+            return user.isAdmin() || assignedToAll || user.getUsername().equals(assignedUserUsername);
+        }
+    }
+
+    private static class Hit {
+        private final long id;
+        private final int score;
+
+        private Hit(long id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    public static class Result {
+        private final List<Long> projectIds;
+        private final int total;
+
+        private Result(List<Long> projectIds, int total) {
+            this.projectIds = projectIds;
+            this.total = total;
+        }
+
+        /**
+         * Ids of the requested page, best match first.
+         */
+        public List<Long> getProjectIds() {
+            return projectIds;
+        }
+
+        /**
+         * Number of visible projects matching the query.
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    private final ProjectRepository projectRepository;
+
+    // gram -> project id -> best score of that gram in the project
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public ProjectSearchIndex(ProjectRepository projectRepository, MeterRegistry meterRegistry) {
+        this.projectRepository = projectRepository;
+        Gauge.builder("devclock.search.indexed", this, ProjectSearchIndex::size)
+            .description("Projects in the search index")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        long started = System.nanoTime();
+        List<ProjectView> projects = projectRepository.findAllViews();
+        for (ProjectView project : projects) {
+            put(project);
+        }
+        log.info("Indexed {} projects for search in {} ms", projects.size(),
+            (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Adds a project, or replaces what is indexed for it.
+     */
+    public void put(Project project) {
+        put(project.getId(), project.getName(), project.getDescription(), project.getAssignedUserUsername(),
+            Boolean.TRUE.equals(project.getAssignedToAll()));
+    }
+
+    private void put(ProjectView project) {
+        put(project.getId(), project.getName(), project.getDescription(), project.getAssignedUserUsername(),
+            Boolean.TRUE.equals(project.getAssignedToAll()));
+    }
+
+    private void put(Long projectId, String name, String description, String assignedUserUsername,
+                     boolean assignedToAll) {
+        Map<String, Integer> grams = new HashMap<>();
+        Set<String> words = new LinkedHashSet<>();
+        addGrams(grams, words, name, NAME_WORD, NAME_PREFIX);
+        addGrams(grams, words, description, DESCRIPTION_WORD, DESCRIPTION_PREFIX);
+        Document document = new Document(projectId, assignedUserUsername, assignedToAll, words);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(projectId);
+            documents.put(projectId, document);
+            for (Map.Entry<String, Integer> gram : grams.entrySet()) {
+                postings.computeIfAbsent(gram.getKey(), key -> new HashMap<>())
+                    .put(projectId, gram.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long projectId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(projectId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the projects {@code user} can see that contain every word of
+     * {@code query} as a word or word prefix, and returns {@code limit} of
+     * them starting at {@code offset}.
+     */
+    public Result search(String query, User user, int offset, int limit) {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain a letter or digit");
+        }
+        if (words.size() > MAX_QUERY_WORDS) {
+            throw new IllegalArgumentException("At most " + MAX_QUERY_WORDS + " search words");
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Integer>> lists = new ArrayList<>(words.size());
+            for (String word : words) {
+                Map<Long, Integer> list = postings.get(gram(word));
+                if (list == null) {
+                    return new Result(Collections.emptyList(), 0);
+                }
+                lists.add(list);
+            }
+
+            // Walk the shortest list and probe the others
+            int shortest = 0;
+            for (int i = 1; i < lists.size(); i++) {
+                if (lists.get(i).size() < lists.get(shortest).size()) {
+                    shortest = i;
+                }
+            }
+            int keep = offset + limit;
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(keep, 1024) + 1, RANK.reversed());
+            int total = 0;
+            for (Map.Entry<Long, Integer> candidate : lists.get(shortest).entrySet()) {
+                Long id = candidate.getKey();
+                Document document = documents.get(id);
+                if (!document.isVisibleTo(user)) {
+                    continue;
+                }
+                int score = 0;
+                for (int i = 0; i < lists.size() && score >= 0; i++) {
+                    Integer wordScore = i == shortest ? candidate.getValue() : lists.get(i).get(id);
+                    if (wordScore == null || !matchesBeyondGram(document, words.get(i))) {
+                        score = -1;
+                    } else {
+                        score += wordScore;
+                    }
+                }
+                if (score < 0) {
+                    continue;
+                }
+                total++;
+                top.add(new Hit(id, score));
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            }
+
+            List<Hit> ranked = new ArrayList<>(top);
+            ranked.sort(RANK);
+            List<Long> page = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                page.add(ranked.get(i).id);
+            }
+            return new Result(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long projectId) {
+        Document document = documents.remove(projectId);
+        if (document == null) {
+            return;
+        }
+        for (String word : document.words) {
+            for (int length = 1; length <= Math.min(word.length(), MAX_GRAM); length++) {
+                String gram = word.substring(0, length);
+                Map<Long, Integer> list = postings.get(gram);
+                if (list != null && list.remove(projectId) != null && list.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Query words longer than a gram were only looked up by their first
+    // MAX_GRAM letters, so check the rest against the project's words
+    private static boolean matchesBeyondGram(Document document, String word) {
+        if (word.length() <= MAX_GRAM) {
+            return true;
+        }
+        for (String indexed : document.words) {
+            if (indexed.startsWith(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addGrams(Map<String, Integer> grams, Set<String> words, String text,
+                                 int wordScore, int prefixScore) {
+        for (String word : words(text)) {
+            words.add(word);
+            for (int length = 1; length <= Math.min(word.length(), MAX_GRAM); length++) {
+                int score = length == word.length() ? wordScore : prefixScore;
+                grams.merge(word.substring(0, length), score, Math::max);
+            }
+        }
+    }
+
+    private static String gram(String word) {
+        return word.length() > MAX_GRAM ? word.substring(0, MAX_GRAM) : word;
+    }
+
+    private static List<String> words(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty() && !words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -1,54 +1,159 @@
 package com.devclock.service;
 
+import com.devclock.model.BulkTimerResult;
 import com.devclock.model.Project;
+import com.devclock.model.ProjectSync;
+import com.devclock.model.ProjectView;
 import com.devclock.model.TimelineEntry;
 import com.devclock.model.User;
 import com.devclock.repository.ProjectRepository;
-import com.devclock.repository.TimelineEntryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 @Transactional
 public class ProjectService {
 
+    static final int MAX_BULK_PROJECTS = 500;
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+    static final int MAX_SEARCH_RESULTS = 10_000;
+
     @Autowired
     private ProjectRepository projectRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private ProjectEventPublisher projectEventPublisher;
+
+    @Autowired
+    private TimelineWriter timelineWriter;
+
+    @Autowired
+    private TimerEngine timerEngine;
+
+    @Autowired
+    private ProjectSnapshotCache projectSnapshotCache;
+
+    @Autowired
+    private ProjectSearchIndex projectSearchIndex;
 
     @Autowired
-    private TimelineEntryRepository timelineEntryRepository;
+    private ClusterForwarder clusterForwarder;
 
-    public List<Project> getAllProjects() {
-        return projectRepository.findByOrderByCreatedAtDesc();
+    @Transactional(readOnly = true)
+    public List<ProjectView> getAllProjects() {
+        return timerEngine.withLiveState(projectRepository.findAllViews());
     }
 
-    public List<Project> getProjectsForUser(User user) {
-        List<Project> allProjects = projectRepository.findByOrderByCreatedAtDesc();
-        
+    @Transactional(readOnly = true)
+    public List<ProjectView> getProjectsForUser(User user) {
         if (user.isAdmin()) {
-            return allProjects;
+            return getAllProjects();
         }
         
-        return allProjects.stream()
-            .filter(project -> 
-                (project.getAssignedToAll() != null && project.getAssignedToAll()) ||
-                user.getUsername().equals(project.getAssignedUserUsername())
-            )
-            .collect(java.util.stream.Collectors.toList());
+        return timerEngine.withLiveState(projectRepository.findViewsVisibleTo(user.getUsername()));
+    }
+
+    /**
+     * {@link #getProjectsForUser} as JSON, shared by every caller that asks
+     * for the same snapshot version.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public byte[] getProjectsJsonForUser(User user) {
+        if (user.isAdmin()) {
+            return getProjectSnapshot().json();
+        }
+        return projectSnapshotCache.render(user.getUsername(), () -> getProjectsForUser(user));
+    }
+
+    /**
+     * Ranked search over the projects {@code user} can see. {@code after} is
+     * the cursor returned with the previous page.
+     */
+    @Transactional(readOnly = true)
+    public SearchPage searchProjects(User user, String query, String after, int limit) {
+        if (limit < 1 || limit > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        int offset = 0;
+        if (after != null) {
+            try {
+                offset = Integer.parseInt(after);
+            } catch (NumberFormatException e) {
+                offset = -1;
+            }
+            if (offset < 0 || offset >= MAX_SEARCH_RESULTS) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+        limit = Math.min(limit, MAX_SEARCH_RESULTS - offset);
+
+        ProjectSearchIndex.Result result = projectSearchIndex.search(query, user, offset, limit);
+        List<Long> ids = result.getProjectIds();
+        Map<Long, ProjectView> views = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (ProjectView view : projectRepository.findViewsByIdIn(ids)) {
+                views.put(view.getId(), view);
+            }
+        }
+        List<ProjectView> projects = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            // Missing if deleted since the index was read
+            ProjectView view = views.get(id);
+            if (view != null) {
+                projects.add(timerEngine.withLiveState(view));
+            }
+        }
+
+        int next = offset + ids.size();
+        String nextCursor = next < Math.min(result.getTotal(), MAX_SEARCH_RESULTS) ? String.valueOf(next) : null;
+        return new SearchPage(projects, result.getTotal(), nextCursor);
+    }
+
+    public static class SearchPage {
+        private final List<ProjectView> projects;
+        private final int total;
+        private final String nextCursor;
+
+        private SearchPage(List<ProjectView> projects, int total, String nextCursor) {
+            this.projects = projects;
+            this.total = total;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<ProjectView> getProjects() {
+            return projects;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
     }
 
+    @Transactional(readOnly = true)
+    public ProjectSync syncForUser(User user) {
+        long sequence = projectEventPublisher.currentSequence(user.getUsername());
+        return new ProjectSync(projectEventPublisher.getStream(), sequence, getProjectsForUser(user));
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Project> getProjectById(Long id) {
-        return projectRepository.findById(id);
+        return projectRepository.findById(id).map(timerEngine::withLiveState);
     }
 
     public Project createProject(String name, String description, User user) {
@@ -65,7 +170,9 @@ public class ProjectService {
 
         createTimelineEntry(savedProject, "PROJECT_CREATED", "Project created", user.getUsername());
 
-        broadcastProjectUpdates();
+        AfterCommit.run(() -> projectSearchIndex.put(savedProject));
+        projectSnapshotCache.invalidate();
+        projectEventPublisher.projectCreated(savedProject);
 
         return savedProject;
     }
@@ -78,121 +185,96 @@ public class ProjectService {
         Optional<Project> projectOpt = projectRepository.findById(projectId);
         if (projectOpt.isPresent()) {
             projectRepository.deleteById(projectId);
+            timerEngine.remove(projectId);
             
-            broadcastProjectUpdates();
+            AfterCommit.run(() -> projectSearchIndex.remove(projectId));
+            projectSnapshotCache.invalidate();
+            projectEventPublisher.projectDeleted(projectOpt.get());
         } else {
             throw new IllegalArgumentException("Project not found");
         }
     }
 
-    public synchronized Project toggleTimer(Long projectId, Project.TimerState newState, String username) {
-        Optional<Project> projectOpt = projectRepository.findById(projectId);
-        if (!projectOpt.isPresent()) {
-            throw new IllegalArgumentException("Project not found");
-        }
-
-        Project project = projectOpt.get();
-        LocalDateTime now = LocalDateTime.now();
-        
-        if (project.getCurrentState() != Project.TimerState.STOPPED && 
-            project.getLastStateChange() != null) {
-            
-            Duration elapsed = Duration.between(project.getLastStateChange(), now);
-            long secondsElapsed = elapsed.getSeconds();
-
-            if (project.getCurrentState() == Project.TimerState.DEV_ACTIVE) {
-                project.setDevTimeSeconds(project.getDevTimeSeconds() + secondsElapsed);
-                TimelineEntry stopEntry = new TimelineEntry(project, "STOP_DEV", now, "Development work ended", username);
-                stopEntry.setDurationSeconds(secondsElapsed);
-                timelineEntryRepository.save(stopEntry);
-            } else if (project.getCurrentState() == Project.TimerState.WAIT_ACTIVE) {
-                project.setWaitTimeSeconds(project.getWaitTimeSeconds() + secondsElapsed);
-                TimelineEntry stopEntry = new TimelineEntry(project, "STOP_WAIT", now, "Customer wait ended", username);
-                stopEntry.setDurationSeconds(secondsElapsed);
-                timelineEntryRepository.save(stopEntry);
-            }
-        }
-        
-        project.setCurrentState(newState);
-        project.setLastStateChange(now);
-        
-        Project savedProject = projectRepository.save(project);
-
-        if (newState == Project.TimerState.DEV_ACTIVE) {
-            createTimelineEntry(savedProject, "START_DEV", "Development work started", username);
-        } else if (newState == Project.TimerState.WAIT_ACTIVE) {
-            createTimelineEntry(savedProject, "START_WAIT", "Customer wait started", username);
-        } else if (newState == Project.TimerState.STOPPED) {
-            createTimelineEntry(savedProject, "TIMER_STOPPED", "All timers stopped", username);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Project toggleTimer(Long projectId, Project.TimerState newState, String username) {
+        Project project;
+        try {
+            project = timerEngine.toggle(projectId, newState, username);
+        } catch (ProjectOwnedElsewhereException e) {
+            // The owner invalidates and publishes for the whole cluster
+            return clusterForwarder.toggle(e, newState, username);
         }
 
-        broadcastProjectUpdates();
+        projectSnapshotCache.invalidate();
+        projectEventPublisher.timersUpdated(Collections.singletonList(project));
 
-        return savedProject;
+        return project;
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Project stopTimer(Long projectId, String username) {
         return toggleTimer(projectId, Project.TimerState.STOPPED, username);
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Project startDevTimer(Long projectId, String username) {
         return toggleTimer(projectId, Project.TimerState.DEV_ACTIVE, username);
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Project startWaitTimer(Long projectId, String username) {
         return toggleTimer(projectId, Project.TimerState.WAIT_ACTIVE, username);
     }
 
-    private void updateElapsedTime(Project project) {
-        if (project.getCurrentState() == Project.TimerState.STOPPED || 
-            project.getLastStateChange() == null) {
-            return;
+    /**
+     * Moves the given projects, or every running project whose session
+     * {@code target} started when no ids are given, to {@code newState} as
+     * one operation with a single published update.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BulkTimerResult> toggleTimers(List<Long> projectIds, User target, Project.TimerState newState,
+                                              String username) {
+        if (newState == null) {
+            throw new IllegalArgumentException("Target state is required");
         }
-
-        LocalDateTime now = LocalDateTime.now();
-        Duration elapsed = Duration.between(project.getLastStateChange(), now);
-        long secondsElapsed = elapsed.getSeconds();
-
-        if (project.getCurrentState() == Project.TimerState.DEV_ACTIVE) {
-            project.setDevTimeSeconds(project.getDevTimeSeconds() + secondsElapsed);
-        } else if (project.getCurrentState() == Project.TimerState.WAIT_ACTIVE) {
-            project.setWaitTimeSeconds(project.getWaitTimeSeconds() + secondsElapsed);
+        if ((projectIds == null) == (target == null)) {
+            throw new IllegalArgumentException("Give either project ids or a username");
+        }
+        if (projectIds == null) {
+            // Visibility is not enough: a shared project may be running a
+            // session somebody else started
+            projectIds = projectRepository.findRunningIdsStartedBy(target.getUsername());
+        } else if (projectIds.size() > MAX_BULK_PROJECTS) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_PROJECTS + " projects per request");
         }
-        
-        project.setLastStateChange(now);
-    }
 
-    public synchronized List<Project> updateAllActiveProjects() {
-        List<Project> activeProjects = projectRepository.findActiveProjects();
-        
-        for (Project project : activeProjects) {
-            updateElapsedTime(project);
-            projectRepository.save(project);
+        Map<String, List<Long>> elsewhere = new TreeMap<>();
+        List<BulkTimerResult> results = timerEngine.toggleAll(projectIds, newState, username, elsewhere);
+        List<Project> changed = new ArrayList<>();
+        for (BulkTimerResult result : results) {
+            if (result.getStatus() == BulkTimerResult.Status.APPLIED) {
+                changed.add(result.getProject());
+            }
+        }
+        if (!changed.isEmpty()) {
+            projectSnapshotCache.invalidate();
+            projectEventPublisher.timersUpdated(changed);
         }
-        
-        return getAllProjects();
-    }
 
-    public List<Project> getProjectsWithCurrentTimes() {
-        List<Project> allProjects = getAllProjects();
-        LocalDateTime now = LocalDateTime.now();
-        
-        for (Project project : allProjects) {
-            if (project.getCurrentState() != Project.TimerState.STOPPED && 
-                project.getLastStateChange() != null) {
-                
-                Duration elapsed = Duration.between(project.getLastStateChange(), now);
-                long secondsElapsed = elapsed.getSeconds();
-
-                if (project.getCurrentState() == Project.TimerState.DEV_ACTIVE) {
-                    project.setDevTimeSeconds(project.getDevTimeSeconds() + secondsElapsed);
-                } else if (project.getCurrentState() == Project.TimerState.WAIT_ACTIVE) {
-                    project.setWaitTimeSeconds(project.getWaitTimeSeconds() + secondsElapsed);
-                }
+        if (!elsewhere.isEmpty()) {
+            // Each owning node applies and publishes its share as one update
+            results = new ArrayList<>(results);
+            for (Map.Entry<String, List<Long>> owner : elsewhere.entrySet()) {
+                results.addAll(clusterForwarder.toggleAll(owner.getKey(), owner.getValue(), newState, username));
             }
+            results.sort(Comparator.comparing(BulkTimerResult::getProjectId));
         }
-        
-        return allProjects;
+        return results;
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProjectSnapshotCache.Snapshot getProjectSnapshot() {
+        return projectSnapshotCache.get(this::getAllProjects);
     }
 
     public Project assignProjectToUser(Long projectId, String username, User adminUser) {
@@ -206,13 +288,18 @@ public class ProjectService {
         }
 
         Project project = projectOpt.get();
+        Project before = project.copy();
         project.setAssignedUserUsername(username);
         project.setAssignedToAll(false);
         project.setUpdatedAt(LocalDateTime.now());
         
-        Project savedProject = projectRepository.save(project);
+        Project savedProject = timerEngine.withLiveState(projectRepository.save(project));
+        timerEngine.refreshDescriptor(savedProject);
         
-        broadcastProjectUpdates();
+        // Visibility is part of the index
+        AfterCommit.run(() -> projectSearchIndex.put(savedProject));
+        projectSnapshotCache.invalidate();
+        projectEventPublisher.projectUpdated(before, savedProject);
         
         return savedProject;
     }
@@ -228,13 +315,18 @@ public class ProjectService {
         }
 
         Project project = projectOpt.get();
+        Project before = project.copy();
         project.setAssignedUserUsername(null);
         project.setAssignedToAll(true);
         project.setUpdatedAt(LocalDateTime.now());
         
-        Project savedProject = projectRepository.save(project);
+        Project savedProject = timerEngine.withLiveState(projectRepository.save(project));
+        timerEngine.refreshDescriptor(savedProject);
         
-        broadcastProjectUpdates();
+        // Visibility is part of the index
+        AfterCommit.run(() -> projectSearchIndex.put(savedProject));
+        projectSnapshotCache.invalidate();
+        projectEventPublisher.projectUpdated(before, savedProject);
         
         return savedProject;
     }
@@ -250,25 +342,28 @@ public class ProjectService {
         }
 
         Project project = projectOpt.get();
+        Project before = project.copy();
         project.setAssignedUserUsername(null);
         project.setAssignedToAll(false);
         project.setUpdatedAt(LocalDateTime.now());
         
-        Project savedProject = projectRepository.save(project);
+        Project savedProject = timerEngine.withLiveState(projectRepository.save(project));
+        timerEngine.refreshDescriptor(savedProject);
         
-        broadcastProjectUpdates();
+        // Visibility is part of the index
+        AfterCommit.run(() -> projectSearchIndex.put(savedProject));
+        projectSnapshotCache.invalidate();
+        projectEventPublisher.projectUpdated(before, savedProject);
         
         return savedProject;
     }
 
+    // Inserted in the caller's transaction rather than queued: the queue's
+    // writer needs the connection this transaction holds, and the project
+    // must not commit without its entry.
     private void createTimelineEntry(Project project, String eventType, String description, String username) {
-        System.out.println("Creating timeline entry: " + eventType + " for project " + project.getId() + " by " + username);
         TimelineEntry entry = new TimelineEntry(project, eventType, LocalDateTime.now(), description, username);
-        TimelineEntry saved = timelineEntryRepository.save(entry);
-        System.out.println("Timeline entry saved with ID: " + saved.getId());
-    }
-
-    private void broadcastProjectUpdates() {
-        messagingTemplate.convertAndSend("/topic/projects", getAllProjects());
+        entry.setProjectId(project.getId());
+        timelineWriter.insertAll(Collections.singletonList(entry));
     }
 }
@@ -0,0 +1,200 @@
+package com.devclock.service;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the list of all projects with their live timer state, tagged with a
+ * version that is bumped whenever a project or its timer changes. Running
+ * times are not stored; {@link Snapshot#projectsAt} derives them from the
+ * totals and {@code lastStateChange}, so serving them needs no writes.
+ * <p>
+ * The JSON of each version is rendered once and the same bytes are handed
+ * to every caller until the version moves on.
+ */
+@Service
+public class ProjectSnapshotCache {
+
+    private final ObjectMapper objectMapper;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile Rendered rendered;
+
+    public ProjectSnapshotCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public class Snapshot {
+        private final long version;
+        private final List<ProjectView> projects;
+        private final boolean anyActive;
+        private volatile byte[] json;
+        private volatile RenderedAt renderedAt;
+
+        private Snapshot(long version, List<ProjectView> projects) {
+            this.version = version;
+            this.projects = projects;
+            boolean active = false;
+            for (ProjectView project : projects) {
+                active |= project.isRunning();
+            }
+            this.anyActive = active;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * While a timer runs the representation changes every second, so the
+         * tag includes the second as well as the version.
+         */
+        public String etagAt(long nowMs) {
+            if (!anyActive) {
+                return "\"" + version + "\"";
+            }
+            return "\"" + version + "-" + nowMs / 1000 + "\"";
+        }
+
+        public List<ProjectView> getProjects() {
+            return projects;
+        }
+
+        public List<ProjectView> projectsAt(long nowMs) {
+            if (!anyActive) {
+                return projects;
+            }
+            List<ProjectView> result = new ArrayList<>(projects.size());
+            for (ProjectView project : projects) {
+                if (project.isRunning()) {
+                    long elapsedMs = Math.max(0L, nowMs - project.getLastStateChangeEpochMs());
+                    long devTimeMs = project.getDevTimeMs();
+                    long waitTimeMs = project.getWaitTimeMs();
+                    long remainderMs;
+                    if (project.getCurrentState() == Project.TimerState.DEV_ACTIVE) {
+                        remainderMs = (devTimeMs + elapsedMs) % 1000;
+                        devTimeMs += elapsedMs - remainderMs;
+                    } else {
+                        remainderMs = (waitTimeMs + elapsedMs) % 1000;
+                        waitTimeMs += elapsedMs - remainderMs;
+                    }
+                    // Re-anchored where the running total was last a whole
+                    // second, so clients extrapolating in seconds or in
+                    // milliseconds from it do not count the same time twice
+                    project = project.withTimerState(project.getCurrentState(),
+                        ProjectTimer.toDateTime(nowMs - remainderMs), devTimeMs, waitTimeMs);
+                }
+                result.add(project);
+            }
+            return result;
+        }
+
+        /**
+         * The stored totals as JSON, rendered on first use.
+         */
+        public byte[] json() {
+            byte[] cached = json;
+            if (cached == null) {
+                cached = render(projects);
+                json = cached;
+            }
+            return cached;
+        }
+
+        /**
+         * {@link #projectsAt} as JSON, rendered at most once per entity tag.
+         */
+        public byte[] jsonAt(long nowMs) {
+            if (!anyActive) {
+                return json();
+            }
+            String etag = etagAt(nowMs);
+            RenderedAt cached = renderedAt;
+            if (cached != null && cached.etag.equals(etag)) {
+                return cached.json;
+            }
+            byte[] json = render(projectsAt(nowMs));
+            renderedAt = new RenderedAt(etag, json);
+            return json;
+        }
+    }
+
+    private static class RenderedAt {
+        private final String etag;
+        private final byte[] json;
+
+        private RenderedAt(String etag, byte[] json) {
+            this.etag = etag;
+            this.json = json;
+        }
+    }
+
+    private static class Rendered {
+        private final long version;
+        private final ConcurrentMap<String, byte[]> json = new ConcurrentHashMap<>();
+
+        private Rendered(long version) {
+            this.version = version;
+        }
+    }
+
+    public Snapshot get(Supplier<List<ProjectView>> loader) {
+        long current = version.get();
+        Snapshot cached = snapshot;
+        if (cached != null && cached.version == current) {
+            return cached;
+        }
+
+        // Tagged with the version read before loading, so a change that lands
+        // mid-load makes the next call load again rather than serve it stale.
+        Snapshot loaded = new Snapshot(current, Collections.unmodifiableList(new ArrayList<>(loader.get())));
+        snapshot = loaded;
+        return loaded;
+    }
+
+    /**
+     * JSON of the list {@code loader} returns, rendered once per version and
+     * key; used for lists that depend on who is asking.
+     */
+    public byte[] render(String key, Supplier<List<ProjectView>> loader) {
+        long current = version.get();
+        Rendered cached = rendered;
+        if (cached == null || cached.version != current) {
+            cached = new Rendered(current);
+            rendered = cached;
+        }
+        byte[] json = cached.json.get(key);
+        if (json == null) {
+            json = render(loader.get());
+            cached.json.put(key, json);
+        }
+        return json;
+    }
+
+    /**
+     * Marks the cached snapshot stale once the current transaction, if any,
+     * has committed.
+     */
+    public void invalidate() {
+        AfterCommit.run(version::incrementAndGet);
+    }
+
+    private byte[] render(List<ProjectView> projects) {
+        try {
+            return objectMapper.writeValueAsBytes(projects);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize projects", e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.devclock.service;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Live timer state of a single project. Callers hold the instance monitor
+ * while reading or transitioning, so toggles on different projects never
+ * wait on each other.
+ * <p>
+ * Totals are kept in milliseconds and the last transition as epoch
+ * milliseconds, all primitive, so a transition allocates nothing. The
+ * running session is measured on {@link System#nanoTime}: the transition
+ * that started it records the monotonic reading next to the wall-clock one,
+ * and a timer loaded from its row is given the reading its wall-clock start
+ * corresponds to. Wall-clock steps while it runs therefore do not stretch or
+ * shrink it.
+ */
+public class ProjectTimer {
+
+    private final Long projectId;
+    private Project descriptor;
+    private Project.TimerState state;
+    private long lastStateChangeMs;
+    private long lastStateChangeNanos;
+    private boolean changed;
+    private long devTimeMs;
+    private long waitTimeMs;
+    private boolean removed;
+    // Read by the writer thread to drop writes queued behind a failed one
+    private volatile boolean released;
+    private long leaseToken;
+    private String sessionUsername;
+    private TimingWheel.Timeout<ProjectTimer> autoStop;
+
+    ProjectTimer(Project project, long nowMs, long nowNanos) {
+        this.projectId = project.getId();
+        this.descriptor = project.copy();
+        this.state = project.getCurrentState() != null ? project.getCurrentState() : Project.TimerState.STOPPED;
+        this.changed = project.getLastStateChange() != null;
+        if (changed) {
+            this.lastStateChangeMs = Timestamp.valueOf(project.getLastStateChange()).getTime();
+            this.lastStateChangeNanos = nowNanos - Math.max(0L, nowMs - lastStateChangeMs) * 1_000_000L;
+        }
+        this.devTimeMs = project.getDevTimeMs() != null ? project.getDevTimeMs() : 0L;
+        this.waitTimeMs = project.getWaitTimeMs() != null ? project.getWaitTimeMs() : 0L;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public Project.TimerState getState() {
+        return state;
+    }
+
+    /**
+     * Whether the timer has ever changed state; {@link #getLastStateChangeMs}
+     * is meaningless until it has.
+     */
+    public boolean hasChanged() {
+        return changed;
+    }
+
+    public long getLastStateChangeMs() {
+        return lastStateChangeMs;
+    }
+
+    public LocalDateTime getLastStateChange() {
+        return changed ? toDateTime(lastStateChangeMs) : null;
+    }
+
+    public long getDevTimeMs() {
+        return devTimeMs;
+    }
+
+    public long getWaitTimeMs() {
+        return waitTimeMs;
+    }
+
+    public boolean isActive() {
+        return state != Project.TimerState.STOPPED && changed;
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void markRemoved() {
+        this.removed = true;
+    }
+
+    /**
+     * Whether this node gave up the project to another cluster node, or
+     * dropped the timer after its write failed; the caller has to look the
+     * timer up again.
+     */
+    boolean isReleased() {
+        return released;
+    }
+
+    void markReleased() {
+        this.released = true;
+    }
+
+    long getLeaseToken() {
+        return leaseToken;
+    }
+
+    void setLeaseToken(long leaseToken) {
+        this.leaseToken = leaseToken;
+    }
+
+    /**
+     * Who started the running session, or null when the timer is stopped or
+     * the timeline does not say.
+     */
+    String getSessionUsername() {
+        return sessionUsername;
+    }
+
+    void setSessionUsername(String sessionUsername) {
+        this.sessionUsername = sessionUsername;
+    }
+
+    TimingWheel.Timeout<ProjectTimer> getAutoStop() {
+        return autoStop;
+    }
+
+    void setAutoStop(TimingWheel.Timeout<ProjectTimer> autoStop) {
+        this.autoStop = autoStop;
+    }
+
+    void updateDescriptor(Project project) {
+        this.descriptor = project.copy();
+    }
+
+    long elapsedMs(long nowNanos) {
+        if (!isActive()) {
+            return 0L;
+        }
+        return Math.max(0L, (nowNanos - lastStateChangeNanos) / 1_000_000L);
+    }
+
+    /**
+     * The {@link System#nanoTime} reading that corresponds to a wall-clock
+     * instant, for transitions dated at a deadline rather than now.
+     */
+    long nanosAt(long epochMs) {
+        return lastStateChangeNanos + (epochMs - lastStateChangeMs) * 1_000_000L;
+    }
+
+    /**
+     * Folds the running session into the totals and moves to {@code newState}
+     * at wall-clock {@code nowMs}, monotonic {@code nowNanos}. Returns the
+     * milliseconds credited to the state that was left.
+     */
+    long transition(Project.TimerState newState, long nowMs, long nowNanos) {
+        boolean carry = isActive() && nowNanos >= lastStateChangeNanos;
+        long elapsedMs = elapsedMs(nowNanos);
+        if (state == Project.TimerState.DEV_ACTIVE) {
+            devTimeMs += elapsedMs;
+        } else if (state == Project.TimerState.WAIT_ACTIVE) {
+            waitTimeMs += elapsedMs;
+        }
+        // The part of a millisecond not credited carries into the next
+        // session, so rapid toggling does not shed time
+        lastStateChangeNanos = carry ? lastStateChangeNanos + elapsedMs * 1_000_000L : nowNanos;
+        state = newState;
+        lastStateChangeMs = nowMs;
+        changed = true;
+        return elapsedMs;
+    }
+
+    void applyTo(Project project) {
+        project.applyTimerState(state, getLastStateChange(), devTimeMs, waitTimeMs);
+    }
+
+    ProjectView applyTo(ProjectView view) {
+        return view.withTimerState(state, getLastStateChange(), devTimeMs, waitTimeMs);
+    }
+
+    Project toProject() {
+        Project project = descriptor.copy();
+        applyTo(project);
+        return project;
+    }
+
+    // The inverse of the Timestamp.valueOf conversion sqlite-jdbc stores
+    // LocalDateTime columns with
+    static LocalDateTime toDateTime(long epochMs) {
+        return new Timestamp(epochMs).toLocalDateTime();
+    }
+}
@@ -0,0 +1,175 @@
+package com.devclock.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link ClusterBus} over the database the nodes already share. Published
+ * messages are batched into {@code cluster_messages} and every node tails
+ * the table by id, so the table is the broker. SQLite commits one write
+ * transaction at a time, so ids become visible in order and a reader never
+ * skips a message. It only connects nodes that open the same SQLite file,
+ * which means nodes on one host.
+ */
+@Service
+@ConditionalOnProperty(name = "app.cluster.bus", havingValue = "sqlite")
+public class SqliteClusterBus implements ClusterBus {
+
+    private static final Logger log = LoggerFactory.getLogger(SqliteClusterBus.class);
+
+    private static final int READ_BATCH = 1000;
+    private static final long RETENTION_MS = 60_000;
+
+    private static final String INSERT = "INSERT INTO \"cluster_messages\" (\"node_id\", \"payload\", " +
+        "\"created_at\") VALUES (?, ?, ?)";
+    private static final String SELECT_NEWEST_ID = "SELECT COALESCE(MAX(\"id\"), 0) FROM \"cluster_messages\"";
+    private static final String SELECT_AFTER = "SELECT \"id\", \"node_id\", \"payload\" FROM \"cluster_messages\" " +
+        "WHERE \"id\" > ? ORDER BY \"id\" LIMIT " + READ_BATCH;
+    // The newest row stays behind so SQLite never hands out an id a reader
+    // has already passed
+    private static final String PRUNE = "DELETE FROM \"cluster_messages\" WHERE \"created_at\" < ? " +
+        "AND \"id\" < (SELECT MAX(\"id\") FROM \"cluster_messages\")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+    private final ClusterCoordinator clusterCoordinator;
+    private final long pollMillis;
+
+    private final Queue<String> outgoing = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private long lastId;
+    private long lastPruned;
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Row {
+        private final long id;
+        private final String nodeId;
+        private final String payload;
+
+        private Row(long id, String nodeId, String payload) {
+            this.id = id;
+            this.nodeId = nodeId;
+            this.payload = payload;
+        }
+    }
+
+    @Autowired
+    public SqliteClusterBus(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ClusterCoordinator clusterCoordinator,
+                            @Value("${app.cluster.poll-ms:100}") long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.clusterCoordinator = clusterCoordinator;
+        this.pollMillis = pollMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Only what is published from now on
+        lastId = jdbcTemplate.queryForObject(SELECT_NEWEST_ID, Long.class);
+        poller.scheduleWithFixedDelay(this::pollSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Called from commit callbacks, so the insert waits for the poller
+    @Override
+    public void publish(String message) {
+        outgoing.add(message);
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    private void pollSafely() {
+        try {
+            flush();
+            receive();
+            prune();
+        } catch (RuntimeException e) {
+            log.warn("Cluster bus poll failed", e);
+        }
+    }
+
+    private void flush() {
+        List<String> batch = new ArrayList<>();
+        for (String message = outgoing.poll(); message != null; message = outgoing.poll()) {
+            batch.add(message);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (String message : batch) {
+            args.add(new Object[]{clusterCoordinator.getNodeId(), message, now});
+        }
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, args));
+    }
+
+    private void receive() {
+        List<Row> rows;
+        do {
+            rows = readTransaction.execute(status -> jdbcTemplate.query(SELECT_AFTER,
+                (resultSet, rowNum) -> new Row(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)),
+                lastId));
+            for (Row row : rows) {
+                lastId = row.id;
+                if (clusterCoordinator.getNodeId().equals(row.nodeId)) {
+                    continue;
+                }
+                for (Consumer<String> listener : listeners) {
+                    listener.accept(row.payload);
+                }
+            }
+        } while (rows.size() == READ_BATCH);
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruned < RETENTION_MS || !clusterCoordinator.isLeader()) {
+            return;
+        }
+        lastPruned = now;
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.update(PRUNE, now - RETENTION_MS));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        poller.shutdownNow();
+        poller.awaitTermination(5, TimeUnit.SECONDS);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish {} cluster messages on shutdown", outgoing.size(), e);
+        }
+    }
+}
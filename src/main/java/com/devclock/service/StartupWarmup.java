@@ -0,0 +1,75 @@
+package com.devclock.service;
+
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+import com.devclock.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Runs the read paths of the first requests once before the application
+ * reports ready, so nobody waits for Hibernate query plans, Jackson
+ * serializers and the project snapshots to be built after a restart. The
+ * running timers and the user directory are already loaded by then; this
+ * builds the admin snapshot and every listed user's project list on top of
+ * them.
+ */
+@Service
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private TimerEngine timerEngine;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.startup.warm-up:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        ProjectSnapshotCache.Snapshot snapshot = projectService.getProjectSnapshot();
+        List<ProjectView> projects = snapshot.getProjects();
+        snapshot.json();
+        int users = 0;
+        for (UserFileService.UserConfig config : userDirectory.getUserConfigs()) {
+            User user = userDirectory.find(config.username);
+            if (user != null && !user.isAdmin()) {
+                projectService.getProjectsJsonForUser(user);
+            }
+            users++;
+        }
+        objectMapper.writeValueAsBytes(userDirectory.getUserConfigs());
+
+        // The single-project path behind toggles and GET /api/projects/{id}
+        if (!projects.isEmpty()) {
+            Optional<Project> project = projectService.getProjectById(projects.get(0).getId());
+            objectMapper.writeValueAsBytes(project.orElse(null));
+        }
+
+        log.info("Warmed up {} projects, {} running timers and {} users in {} ms", projects.size(),
+            timerEngine.getLoadedCount(), users, (System.nanoTime() - start) / 1_000_000);
+    }
+}
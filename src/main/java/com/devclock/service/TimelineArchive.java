@@ -0,0 +1,432 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import com.devclock.model.TimelineSegment;
+import com.devclock.repository.TimelineSegmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Moves timeline entries older than {@code app.timeline.archive.min-age-days}
+ * out of SQLite into per-project {@link TimelineSegmentFile segment files}.
+ * Each segment is written and synced before the short transaction that
+ * catalogs it in {@code timeline_segments} and deletes its entries, so an
+ * entry is always in exactly one tier; files left behind by a failed run are
+ * removed at startup.
+ * <p>
+ * Some entries are dated in the past when they are appended (auto-stops at
+ * their deadline, the ledger's opening entries), so entries still in the
+ * table can sort before archived ones. Readers merge the two tiers by
+ * (timestamp, id) through a {@link Reader}.
+ */
+@Service
+public class TimelineArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineArchive.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // SQLite hands out ids above the largest one left in the table, so the
+    // newest entry always stays behind to keep archived ids from being reused
+    private static final String NEWEST_ID = "(SELECT MAX(\"id\") FROM \"timeline_entries\")";
+
+    private static final String SELECT_PROJECTS = "SELECT DISTINCT \"project_id\" FROM \"timeline_entries\" " +
+        "WHERE \"timestamp\" < ?";
+    private static final String SELECT_ARCHIVABLE = "SELECT \"id\", \"project_id\", \"event_type\", \"timestamp\", " +
+        "\"description\", \"duration_ms\", \"username\" FROM \"timeline_entries\" " +
+        "WHERE \"project_id\" = ? AND \"timestamp\" < ? AND \"id\" < " + NEWEST_ID +
+        " ORDER BY \"timestamp\", \"id\" LIMIT ?";
+    // Bounded by the largest archived id too, so entries appended while the
+    // segment was being written are left alone whatever their timestamp
+    private static final String DELETE_ARCHIVED = "DELETE FROM \"timeline_entries\" WHERE \"project_id\" = ? " +
+        "AND (\"timestamp\" < ? OR (\"timestamp\" = ? AND \"id\" <= ?)) AND \"id\" <= ? AND \"id\" < " +
+        NEWEST_ID;
+    private static final String INSERT_SEGMENT = "INSERT INTO \"timeline_segments\" (\"project_id\", \"file_name\", " +
+        "\"first_timestamp\", \"first_id\", \"last_timestamp\", \"last_id\", \"entry_count\", \"size_bytes\", " +
+        "\"created_at\") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SEGMENTS = "SELECT \"file_name\" FROM \"timeline_segments\" " +
+        "WHERE \"last_timestamp\" >= ? AND \"first_timestamp\" < ?";
+    private static final String SELECT_SEGMENTS_AFTER = "SELECT \"file_name\" FROM \"timeline_segments\" " +
+        "WHERE \"last_id\" > ? ORDER BY \"project_id\", \"first_timestamp\", \"first_id\"";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimelineSegmentRepository timelineSegmentRepository;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final Path directory;
+    private final int minAgeDays;
+    private final long intervalMinutes;
+    private final int maxSegmentEntries;
+    private final Timer archiveTimer;
+    private final Counter archivedEntries;
+
+    private final ConcurrentMap<String, TimelineSegmentFile> openSegments = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timeline-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public TimelineArchive(JdbcTemplate jdbcTemplate,
+                           TimelineSegmentRepository timelineSegmentRepository,
+                           ClusterCoordinator clusterCoordinator,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.timeline.archive.enabled:true}") boolean enabled,
+                           @Value("${app.timeline.archive.directory:./data/timeline-archive}") String directory,
+                           @Value("${app.timeline.archive.min-age-days:90}") int minAgeDays,
+                           @Value("${app.timeline.archive.interval-minutes:60}") long intervalMinutes,
+                           @Value("${app.timeline.archive.max-segment-entries:100000}") int maxSegmentEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timelineSegmentRepository = timelineSegmentRepository;
+        this.clusterCoordinator = clusterCoordinator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.minAgeDays = minAgeDays;
+        this.intervalMinutes = intervalMinutes;
+        this.maxSegmentEntries = maxSegmentEntries;
+        this.archiveTimer = Timer.builder("devclock.timeline.archive")
+            .description("Time to move all entries past the archive age into segment files")
+            .register(meterRegistry);
+        this.archivedEntries = Counter.builder("devclock.timeline.archived")
+            .description("Timeline entries moved into segment files")
+            .baseUnit("entries")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        // In a cluster another node may be writing a segment right now
+        if (clusterCoordinator.isLeader()) {
+            removeUncataloguedFiles();
+        }
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::archiveSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Archives every entry older than the configured age and returns how
+     * many were moved.
+     */
+    public synchronized int archiveOldEntries() {
+        long cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(minAgeDays)).getTime();
+        long start = System.nanoTime();
+        int total = 0;
+        for (Long projectId : jdbcTemplate.queryForList(SELECT_PROJECTS, Long.class, cutoff)) {
+            int archived;
+            do {
+                archived = archiveBatch(projectId, cutoff);
+                total += archived;
+            } while (archived == maxSegmentEntries);
+        }
+        archiveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        archivedEntries.increment(total);
+        if (total > 0) {
+            log.info("Archived {} timeline entries older than {} days", total, minAgeDays);
+        }
+        return total;
+    }
+
+    /**
+     * Archived entries read one at a time in (timestamp, id) order, so
+     * callers can merge them with the rows still in the table.
+     */
+    public static final class Reader {
+        private final PriorityQueue<TimelineSegmentFile.Cursor> cursors;
+        private final long toMillis;
+
+        private Reader(PriorityQueue<TimelineSegmentFile.Cursor> cursors, long toMillis) {
+            this.cursors = cursors;
+            this.toMillis = toMillis;
+        }
+
+        /**
+         * Returns the next entry without consuming it, or {@code null} once
+         * there are none left.
+         */
+        public TimelineEntry peek() {
+            TimelineSegmentFile.Cursor cursor = cursors.peek();
+            return cursor != null && cursor.currentTimestamp() < toMillis ? cursor.current() : null;
+        }
+
+        public TimelineEntry next() {
+            TimelineEntry entry = peek();
+            if (entry != null) {
+                TimelineSegmentFile.Cursor cursor = cursors.poll();
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            return entry;
+        }
+
+        /**
+         * Passes the entries that sort before {@code row} to the visitor,
+         * until it returns false. Returns false if the visitor stopped.
+         */
+        public boolean visitBefore(TimelineEntry row, Predicate<TimelineEntry> visitor) {
+            long rowMillis = TimelineSegmentFile.millis(row);
+            for (TimelineEntry entry = peek(); entry != null; entry = peek()) {
+                long millis = TimelineSegmentFile.millis(entry);
+                if (millis > rowMillis || (millis == rowMillis && entry.getId() > row.getId())) {
+                    return true;
+                }
+                if (!visitor.test(next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Passes the remaining entries to the visitor, until it returns
+         * false. Returns false if the visitor stopped.
+         */
+        public boolean visitRest(Predicate<TimelineEntry> visitor) {
+            for (TimelineEntry entry = next(); entry != null; entry = next()) {
+                if (!visitor.test(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Opens the archived entries of the given projects, or of all projects
+     * when none are given, with timestamps in {@code [fromMillis, toMillis)}.
+     * Must run inside the caller's transaction so the catalog matches the
+     * entries left in the table.
+     */
+    public Reader open(Collection<Long> projectIds, long fromMillis, long toMillis) {
+        StringBuilder sql = new StringBuilder(SELECT_SEGMENTS);
+        List<Object> args = new ArrayList<>();
+        args.add(fromMillis);
+        args.add(toMillis);
+        if (projectIds != null && !projectIds.isEmpty()) {
+            sql.append(" AND \"project_id\" IN (");
+            for (Long projectId : projectIds) {
+                sql.append(args.size() == 2 ? "?" : ", ?");
+                args.add(projectId);
+            }
+            sql.append(")");
+        }
+        List<String> fileNames = jdbcTemplate.queryForList(sql.toString(), String.class, args.toArray());
+
+        // Segments interleave, those of different projects and, once late
+        // entries have been archived, those of one project too
+        PriorityQueue<TimelineSegmentFile.Cursor> cursors = new PriorityQueue<>(Math.max(1, fileNames.size()),
+            Comparator.comparingLong(TimelineSegmentFile.Cursor::currentTimestamp)
+                .thenComparing(cursor -> cursor.current().getId()));
+        for (String fileName : fileNames) {
+            TimelineSegmentFile.Cursor cursor = segment(fileName).cursor(fromMillis);
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return new Reader(cursors, toMillis);
+    }
+
+    /**
+     * Passes archived entries of the given projects, or of all projects when
+     * none are given, with timestamps in {@code [fromMillis, toMillis)} to
+     * the visitor in (timestamp, id) order, until it returns false. Returns
+     * false if the visitor stopped the scan. Must run inside the caller's
+     * transaction.
+     */
+    public boolean scan(Collection<Long> projectIds, long fromMillis, long toMillis,
+                        Predicate<TimelineEntry> visitor) {
+        return open(projectIds, fromMillis, toMillis).visitRest(visitor);
+    }
+
+    /**
+     * Passes archived entries with ids above {@code afterId} to the visitor,
+     * project by project and each project's in (timestamp, id) order. Must
+     * run inside the caller's transaction.
+     */
+    public void scanAfter(long afterId, Consumer<TimelineEntry> visitor) {
+        for (String fileName : jdbcTemplate.queryForList(SELECT_SEGMENTS_AFTER, String.class, afterId)) {
+            TimelineSegmentFile.Cursor cursor = segment(fileName).cursor(Long.MIN_VALUE);
+            while (cursor.advance()) {
+                if (cursor.current().getId() > afterId) {
+                    visitor.accept(cursor.current());
+                }
+            }
+        }
+    }
+
+    // The segment is encoded, written and synced before the writer
+    // connection is taken; the transaction only catalogs it and deletes the
+    // entries it holds.
+    private int archiveBatch(Long projectId, long cutoff) {
+        List<TimelineEntry> entries = readTransaction.execute(status ->
+            jdbcTemplate.query(SELECT_ARCHIVABLE, ENTRY_MAPPER, projectId, cutoff, maxSegmentEntries));
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+        TimelineEntry first = entries.get(0);
+        TimelineEntry last = entries.get(entries.size() - 1);
+        long maxId = 0L;
+        for (TimelineEntry entry : entries) {
+            maxId = Math.max(maxId, entry.getId());
+        }
+        String fileName = projectId + "/" + TimelineSegmentFile.millis(first) + "-" + first.getId() + SEGMENT_SUFFIX;
+        Path file = directory.resolve(fileName);
+        long size = write(file, TimelineSegmentFile.encode(projectId, entries));
+
+        long lastMillis = TimelineSegmentFile.millis(last);
+        long lastId = maxId;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(INSERT_SEGMENT, projectId, fileName,
+                    Timestamp.valueOf(first.getTimestamp()), first.getId(),
+                    Timestamp.valueOf(last.getTimestamp()), lastId,
+                    entries.size(), size, Timestamp.valueOf(LocalDateTime.now()));
+                int deleted = jdbcTemplate.update(DELETE_ARCHIVED, projectId, lastMillis, lastMillis, last.getId(),
+                    lastId);
+                if (deleted != entries.size()) {
+                    // Deleted along with its project, or archived by another node
+                    throw new IllegalStateException("Archived " + entries.size() + " entries of project " +
+                        projectId + " but deleted " + deleted);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The catalog row was rolled back, so the file must go too
+            deleteQuietly(file);
+            throw e;
+        }
+        return entries.size();
+    }
+
+    private long write(Path file, byte[] bytes) {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(bytes));
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            return bytes.length;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Failed to write timeline segment " + file, e);
+        }
+    }
+
+    private TimelineSegmentFile segment(String fileName) {
+        return openSegments.computeIfAbsent(fileName, name -> {
+            try {
+                return TimelineSegmentFile.open(directory.resolve(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open timeline segment " + name, e);
+            }
+        });
+    }
+
+    private void removeUncataloguedFiles() throws IOException {
+        Set<Path> catalogued = new HashSet<>();
+        for (TimelineSegment segment : timelineSegmentRepository.findAll()) {
+            catalogued.add(directory.resolve(segment.getFileName()));
+        }
+        List<Path> orphans = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile)
+                .filter(path -> path.toString().endsWith(TEMP_SUFFIX)
+                    || (path.toString().endsWith(SEGMENT_SUFFIX) && !catalogued.contains(path)))
+                .forEach(orphans::add);
+        }
+        for (Path orphan : orphans) {
+            log.warn("Removing timeline segment {} left by an interrupted archive run", orphan);
+            deleteQuietly(orphan);
+        }
+    }
+
+    private void archiveSafely() {
+        if (!clusterCoordinator.isLeader()) {
+            return;
+        }
+        try {
+            archiveOldEntries();
+        } catch (RuntimeException e) {
+            log.error("Failed to archive timeline entries", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private static final RowMapper<TimelineEntry> ENTRY_MAPPER = (resultSet, rowNum) -> {
+        TimelineEntry entry = new TimelineEntry();
+        entry.setId(resultSet.getLong("id"));
+        entry.setProjectId(resultSet.getLong("project_id"));
+        entry.setEventType(resultSet.getString("event_type"));
+        entry.setTimestamp(new Timestamp(resultSet.getLong("timestamp")).toLocalDateTime());
+        entry.setDescription(resultSet.getString("description"));
+        long durationMs = resultSet.getLong("duration_ms");
+        entry.setDurationMs(resultSet.wasNull() ? null : durationMs);
+        entry.setUsername(resultSet.getString("username"));
+        return entry;
+    };
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,309 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable, memory-mapped file holding one project's archived timeline
+ * entries in (timestamp, id) order.
+ * <p>
+ * Layout: a header, a dictionary of the distinct event types, descriptions
+ * and usernames, an index with the first timestamp, id and byte offset of
+ * every block of {@value #BLOCK_SIZE} entries, the entries, and a CRC32 of
+ * everything before it. Within a block, timestamps and ids are stored as
+ * varint deltas from the previous entry, strings as dictionary indexes, so
+ * a typical entry takes a handful of bytes. Reads binary search the block
+ * index and decode forward from there.
+ * <p>
+ * Version 2 stores durations in milliseconds; version 1 files, written
+ * while durations were whole seconds, are still read and converted.
+ */
+final class TimelineSegmentFile {
+
+    private static final int MAGIC = 0x44435453; // "DCTS"
+    private static final int VERSION = 2;
+    private static final int VERSION_SECONDS = 1;
+    private static final int BLOCK_SIZE = 256;
+
+    private final long projectId;
+    private final long durationScale;
+    private final int entryCount;
+    private final String[] dictionary;
+    private final long[] blockTimestamps;
+    private final long[] blockIds;
+    private final int[] blockOffsets;
+    private final ByteBuffer entries;
+
+    private TimelineSegmentFile(long projectId, long durationScale, int entryCount, String[] dictionary,
+                                long[] blockTimestamps, long[] blockIds, int[] blockOffsets, ByteBuffer entries) {
+        this.projectId = projectId;
+        this.durationScale = durationScale;
+        this.entryCount = entryCount;
+        this.dictionary = dictionary;
+        this.blockTimestamps = blockTimestamps;
+        this.blockIds = blockIds;
+        this.blockOffsets = blockOffsets;
+        this.entries = entries;
+    }
+
+    /**
+     * Encodes entries that are already sorted by (timestamp, id).
+     */
+    static byte[] encode(long projectId, List<TimelineEntry> sorted) {
+        Map<String, Integer> dictionaryIndex = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (TimelineEntry entry : sorted) {
+            for (String value : new String[] {entry.getEventType(), entry.getDescription(), entry.getUsername()}) {
+                if (value != null && !dictionaryIndex.containsKey(value)) {
+                    dictionaryIndex.put(value, dictionary.size());
+                    dictionary.add(value);
+                }
+            }
+        }
+
+        int blockCount = (sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[] blockTimestamps = new long[blockCount];
+        long[] blockIds = new long[blockCount];
+        int[] blockOffsets = new int[blockCount];
+        ByteArrayOutputStream encodedEntries = new ByteArrayOutputStream(sorted.size() * 8);
+        long previousTimestamp = 0;
+        long previousId = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            TimelineEntry entry = sorted.get(i);
+            long timestamp = millis(entry);
+            if (i % BLOCK_SIZE == 0) {
+                int block = i / BLOCK_SIZE;
+                blockTimestamps[block] = timestamp;
+                blockIds[block] = entry.getId();
+                blockOffsets[block] = encodedEntries.size();
+                previousTimestamp = timestamp;
+                previousId = entry.getId();
+            }
+            writeVarLong(encodedEntries, timestamp - previousTimestamp);
+            writeVarLong(encodedEntries, zigZag(entry.getId() - previousId));
+            writeVarLong(encodedEntries, dictionaryIndex.get(entry.getEventType()));
+            writeVarLong(encodedEntries, entry.getDescription() != null ? dictionaryIndex.get(entry.getDescription()) + 1 : 0);
+            writeVarLong(encodedEntries, entry.getUsername() != null ? dictionaryIndex.get(entry.getUsername()) + 1 : 0);
+            writeVarLong(encodedEntries, entry.getDurationMs() != null ? zigZag(entry.getDurationMs()) + 1 : 0);
+            previousTimestamp = timestamp;
+            previousId = entry.getId();
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(encodedEntries.size() + 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(projectId);
+            out.writeInt(sorted.size());
+            out.writeInt(dictionary.size());
+            out.writeInt(blockCount);
+            for (String value : dictionary) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            for (int block = 0; block < blockCount; block++) {
+                out.writeLong(blockTimestamps[block]);
+                out.writeLong(blockIds[block]);
+                out.writeInt(blockOffsets[block]);
+            }
+            out.writeInt(encodedEntries.size());
+            encodedEntries.writeTo(out);
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode timeline segment", e);
+        }
+    }
+
+    static TimelineSegmentFile open(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuffer buffer = mapped.duplicate();
+        if (buffer.remaining() < 4) {
+            throw new IOException("Truncated timeline segment " + path);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(buffer.limit() - 4);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Checksum mismatch in timeline segment " + path);
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a timeline segment: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION && version != VERSION_SECONDS) {
+            throw new IOException("Unsupported timeline segment version " + version + ": " + path);
+        }
+        long projectId = buffer.getLong();
+        int entryCount = buffer.getInt();
+        String[] dictionary = new String[buffer.getInt()];
+        int blockCount = buffer.getInt();
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] utf8 = new byte[buffer.getInt()];
+            buffer.get(utf8);
+            dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        long[] blockTimestamps = new long[blockCount];
+        long[] blockIds = new long[blockCount];
+        int[] blockOffsets = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            blockTimestamps[block] = buffer.getLong();
+            blockIds[block] = buffer.getLong();
+            blockOffsets[block] = buffer.getInt();
+        }
+        int entriesLength = buffer.getInt();
+        ByteBuffer entries = buffer.slice();
+        entries.limit(entriesLength);
+
+        return new TimelineSegmentFile(projectId, version == VERSION_SECONDS ? 1000L : 1L, entryCount, dictionary,
+            blockTimestamps, blockIds, blockOffsets, entries);
+    }
+
+    /**
+     * Returns a cursor positioned before the first entry with a timestamp of
+     * at least {@code fromMillis}.
+     */
+    Cursor cursor(long fromMillis) {
+        // The last block starting strictly before fromMillis may still hold
+        // matching entries; earlier blocks cannot.
+        int low = 0;
+        int high = blockTimestamps.length - 1;
+        int start = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blockTimestamps[middle] < fromMillis) {
+                start = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return new Cursor(start, fromMillis);
+    }
+
+    /**
+     * Forward-only position in the segment; {@link #advance} decodes the
+     * next entry into {@link #current}.
+     */
+    final class Cursor {
+        private final ByteBuffer buffer = entries.duplicate();
+        private final long fromMillis;
+        private int block;
+        private int index;
+        private long previousTimestamp;
+        private long previousId;
+        private TimelineEntry current;
+        private long currentTimestamp;
+
+        private Cursor(int block, long fromMillis) {
+            this.block = block;
+            this.index = block * BLOCK_SIZE;
+            this.fromMillis = fromMillis;
+            if (block < blockOffsets.length) {
+                buffer.position(blockOffsets[block]);
+            }
+        }
+
+        TimelineEntry current() {
+            return current;
+        }
+
+        long currentTimestamp() {
+            return currentTimestamp;
+        }
+
+        boolean advance() {
+            while (index < entryCount) {
+                if (index % BLOCK_SIZE == 0) {
+                    block = index / BLOCK_SIZE;
+                    previousTimestamp = blockTimestamps[block];
+                    previousId = blockIds[block];
+                }
+                long timestamp = previousTimestamp + readVarLong(buffer);
+                long id = previousId + unZigZag(readVarLong(buffer));
+                String eventType = dictionary[(int) readVarLong(buffer)];
+                int description = (int) readVarLong(buffer);
+                int username = (int) readVarLong(buffer);
+                long duration = readVarLong(buffer);
+                previousTimestamp = timestamp;
+                previousId = id;
+                index++;
+
+                if (timestamp < fromMillis) {
+                    continue;
+                }
+                TimelineEntry entry = new TimelineEntry();
+                entry.setId(id);
+                entry.setProjectId(projectId);
+                entry.setEventType(eventType);
+                entry.setTimestamp(new Timestamp(timestamp).toLocalDateTime());
+                entry.setDescription(description > 0 ? dictionary[description - 1] : null);
+                entry.setUsername(username > 0 ? dictionary[username - 1] : null);
+                entry.setDurationMs(duration > 0 ? unZigZag(duration - 1) * durationScale : null);
+                current = entry;
+                currentTimestamp = timestamp;
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+
+    static long millis(TimelineEntry entry) {
+        return Timestamp.valueOf(entry.getTimestamp()).getTime();
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads a project's timeline in (timestamp, id) order using the
+ * {@code idx_timeline_project_timestamp} index. Pages are addressed by a
+ * keyset cursor of the form {@code <timestamp millis>:<id>} naming the last
+ * entry already seen, so a page costs the same however deep it is.
+ * Exports across projects use {@code idx_timeline_timestamp} instead.
+ * Entries moved to {@link TimelineArchive} are merged in by (timestamp, id)
+ * as the rows are read.
+ */
+@Service
+public class TimelineService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String SELECT = "SELECT \"id\", \"project_id\", \"event_type\", \"timestamp\", " +
+        "\"description\", \"duration_ms\", \"username\" FROM \"timeline_entries\" WHERE \"project_id\" = ?";
+    private static final String ORDER_BY = " ORDER BY \"timestamp\", \"id\"";
+
+    private static final String EXPORT_SELECT = "SELECT t.\"id\", t.\"project_id\", p.\"name\" AS \"project_name\", " +
+        "t.\"event_type\", t.\"timestamp\", t.\"description\", t.\"duration_ms\", t.\"username\" " +
+        "FROM \"timeline_entries\" t LEFT JOIN \"projects\" p ON p.\"id\" = t.\"project_id\" WHERE 1 = 1";
+    private static final String EXPORT_ORDER_BY = " ORDER BY t.\"timestamp\", t.\"id\"";
+    private static final String[] EXPORT_COLUMNS = {"id", "projectId", "projectName", "eventType", "timestamp",
+        "description", "durationSeconds", "username"};
+    private static final DateTimeFormatter EXPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TimelineArchive timelineArchive;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TimelineService(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           TimelineArchive timelineArchive,
+                           ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.timelineArchive = timelineArchive;
+        this.objectMapper = objectMapper;
+    }
+
+    public static class Query {
+        private final Long projectId;
+        private final Cursor after;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+
+        public Query(Long projectId, String after, LocalDateTime from, LocalDateTime to) {
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("'from' must not be after 'to'");
+            }
+            this.projectId = projectId;
+            this.after = after != null ? Cursor.parse(after) : null;
+            this.from = from;
+            this.to = to;
+        }
+
+        private long fromMillis() {
+            long fromMillis = from != null ? Timestamp.valueOf(from).getTime() : Long.MIN_VALUE;
+            return after != null ? Math.max(fromMillis, after.timestampMillis) : fromMillis;
+        }
+
+        private long toMillis() {
+            return to != null ? Timestamp.valueOf(to).getTime() : Long.MAX_VALUE;
+        }
+
+        private boolean isPastCursor(TimelineEntry entry) {
+            if (after == null) {
+                return true;
+            }
+            long timestampMillis = TimelineSegmentFile.millis(entry);
+            return timestampMillis > after.timestampMillis
+                || (timestampMillis == after.timestampMillis && entry.getId() > after.id);
+        }
+    }
+
+    public enum ExportFormat {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        ExportFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ExportFormat parse(String value) {
+            for (ExportFormat format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+
+    public static class Page {
+        private final List<TimelineEntry> entries;
+        private final String nextCursor;
+
+        private Page(List<TimelineEntry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<TimelineEntry> getEntries() {
+            return entries;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    private static class Cursor {
+        private final long timestampMillis;
+        private final long id;
+
+        private Cursor(long timestampMillis, long id) {
+            this.timestampMillis = timestampMillis;
+            this.id = id;
+        }
+
+        private static Cursor parse(String value) {
+            int separator = value.indexOf(':');
+            try {
+                if (separator > 0) {
+                    return new Cursor(Long.parseLong(value.substring(0, separator)),
+                        Long.parseLong(value.substring(separator + 1)));
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            throw new IllegalArgumentException("Invalid timeline cursor: " + value);
+        }
+
+        private String format() {
+            return timestampMillis + ":" + id;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} entries, merging archived segments with
+     * the table.
+     */
+    public Page page(Query query, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<TimelineEntry> rows = new ArrayList<>(limit);
+        boolean[] hasMore = new boolean[1];
+        // The extra entry only tells us whether another page exists
+        Predicate<TimelineEntry> collect = entry -> {
+            if (rows.size() == limit) {
+                hasMore[0] = true;
+                return false;
+            }
+            rows.add(entry);
+            return true;
+        };
+
+        Predicate<TimelineEntry> collectArchived = entry -> !query.isPastCursor(entry) || collect.test(entry);
+        readTransaction.executeWithoutResult(status -> {
+            TimelineArchive.Reader archived = timelineArchive.open(Collections.singletonList(query.projectId),
+                query.fromMillis(), query.toMillis());
+            List<Object> args = new ArrayList<>();
+            String sql = sql(query, args) + " LIMIT ?";
+            args.add(limit + 1);
+            jdbcTemplate.query(sql, resultSet -> {
+                if (hasMore[0]) {
+                    return;
+                }
+                TimelineEntry row = ROW_MAPPER.mapRow(resultSet, rows.size());
+                if (archived.visitBefore(row, collectArchived)) {
+                    collect.test(row);
+                }
+            }, args.toArray());
+            if (!hasMore[0]) {
+                archived.visitRest(collectArchived);
+            }
+        });
+
+        String nextCursor = null;
+        if (hasMore[0]) {
+            TimelineEntry last = rows.get(limit - 1);
+            nextCursor = new Cursor(TimelineSegmentFile.millis(last), last.getId()).format();
+        }
+        return new Page(rows, nextCursor);
+    }
+
+    /**
+     * Writes every matching entry as a JSON array, serializing each row as
+     * it comes off the archive or the result set instead of materializing
+     * the whole list.
+     */
+    public StreamingResponseBody stream(Query query) {
+        List<Object> args = new ArrayList<>();
+        String sql = sql(query, args);
+
+        return output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                Predicate<TimelineEntry> writeArchived = entry -> {
+                    if (query.isPastCursor(entry)) {
+                        writeJson(generator, entry);
+                    }
+                    return true;
+                };
+                readTransaction.executeWithoutResult(status -> {
+                    TimelineArchive.Reader archived = timelineArchive.open(
+                        Collections.singletonList(query.projectId), query.fromMillis(), query.toMillis());
+                    jdbcTemplate.query(connection -> prepareStreaming(connection, sql, args),
+                        resultSet -> {
+                            TimelineEntry row = ROW_MAPPER.mapRow(resultSet, 0);
+                            archived.visitBefore(row, writeArchived);
+                            writeJson(generator, row);
+                        });
+                    archived.visitRest(writeArchived);
+                });
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    /**
+     * Writes the entries of the given projects, or of every project when
+     * none are given, in timestamp order as CSV or newline-delimited JSON.
+     * Rows are written as they are read from the archive and the cursor, so
+     * memory use does not depend on the size of the export.
+     */
+    public StreamingResponseBody export(List<Long> projectIds, LocalDateTime from, LocalDateTime to,
+                                        ExportFormat format) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(EXPORT_SELECT);
+        if (projectIds != null && !projectIds.isEmpty()) {
+            sql.append(" AND t.\"project_id\" IN (");
+            for (int i = 0; i < projectIds.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(projectIds.get(i));
+            }
+            sql.append(")");
+        }
+        long fromMillis = from != null ? Timestamp.valueOf(from).getTime() : Long.MIN_VALUE;
+        long toMillis = to != null ? Timestamp.valueOf(to).getTime() : Long.MAX_VALUE;
+        if (from != null) {
+            sql.append(" AND t.\"timestamp\" >= ?");
+            args.add(fromMillis);
+        }
+        if (to != null) {
+            sql.append(" AND t.\"timestamp\" < ?");
+            args.add(toMillis);
+        }
+        sql.append(EXPORT_ORDER_BY);
+
+        return output -> {
+            try (ExportWriter writer = format == ExportFormat.CSV
+                    ? new CsvExportWriter(output) : new NdjsonExportWriter(output)) {
+                readTransaction.executeWithoutResult(status -> {
+                    Map<Long, String> projectNames = new HashMap<>();
+                    jdbcTemplate.query("SELECT \"id\", \"name\" FROM \"projects\"", resultSet -> {
+                        projectNames.put(resultSet.getLong("id"), resultSet.getString("name"));
+                    });
+                    Predicate<TimelineEntry> writeArchived = entry -> {
+                        writeExportRow(writer, entry, projectNames.get(entry.getProjectId()));
+                        return true;
+                    };
+                    TimelineArchive.Reader archived = timelineArchive.open(projectIds, fromMillis, toMillis);
+                    jdbcTemplate.query(connection -> prepareStreaming(connection, sql.toString(), args),
+                        resultSet -> {
+                            TimelineEntry row = ROW_MAPPER.mapRow(resultSet, 0);
+                            archived.visitBefore(row, writeArchived);
+                            writeExportRow(writer, row, resultSet.getString("project_name"));
+                        });
+                    archived.visitRest(writeArchived);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    private PreparedStatement prepareStreaming(Connection connection, String sql, List<Object> args)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(STREAM_FETCH_SIZE);
+        for (int i = 0; i < args.size(); i++) {
+            statement.setObject(i + 1, args.get(i));
+        }
+        return statement;
+    }
+
+    private void writeJson(JsonGenerator generator, TimelineEntry entry) {
+        try {
+            objectMapper.writeValue(generator, entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeExportRow(ExportWriter writer, TimelineEntry entry, String projectName) {
+        Object[] row = {entry.getId(), entry.getProjectId(), projectName, entry.getEventType(),
+            EXPORT_TIMESTAMP.format(entry.getTimestamp()), entry.getDescription(), entry.getDurationSeconds(),
+            entry.getUsername()};
+        try {
+            writer.write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface ExportWriter extends Closeable {
+        void write(Object[] row) throws IOException;
+    }
+
+    private static class CsvExportWriter implements ExportWriter {
+        private final Writer writer;
+
+        private CsvExportWriter(OutputStream output) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            write(EXPORT_COLUMNS);
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (row[i] != null) {
+                    writeField(row[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: quote fields containing separators, quotes or line breaks
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private class NdjsonExportWriter implements ExportWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonExportWriter(OutputStream output) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(output);
+            // Lines are separated explicitly rather than by the default space
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                generator.writeObjectField(EXPORT_COLUMNS[i], row[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private String sql(Query query, List<Object> args) {
+        StringBuilder sql = new StringBuilder(SELECT);
+        args.add(query.projectId);
+        if (query.from != null) {
+            sql.append(" AND \"timestamp\" >= ?");
+            args.add(Timestamp.valueOf(query.from).getTime());
+        }
+        if (query.to != null) {
+            sql.append(" AND \"timestamp\" < ?");
+            args.add(Timestamp.valueOf(query.to).getTime());
+        }
+        if (query.after != null) {
+            sql.append(" AND (\"timestamp\" > ? OR (\"timestamp\" = ? AND \"id\" > ?))");
+            args.add(query.after.timestampMillis);
+            args.add(query.after.timestampMillis);
+            args.add(query.after.id);
+        }
+        return sql.append(ORDER_BY).toString();
+    }
+
+    private static final RowMapper<TimelineEntry> ROW_MAPPER = (resultSet, rowNum) -> {
+        TimelineEntry entry = new TimelineEntry();
+        entry.setId(resultSet.getLong("id"));
+        entry.setProjectId(resultSet.getLong("project_id"));
+        entry.setEventType(resultSet.getString("event_type"));
+        entry.setTimestamp(new Timestamp(resultSet.getLong("timestamp")).toLocalDateTime());
+        entry.setDescription(resultSet.getString("description"));
+        long durationMs = resultSet.getLong("duration_ms");
+        entry.setDurationMs(resultSet.wasNull() ? null : durationMs);
+        entry.setUsername(resultSet.getString("username"));
+        return entry;
+    };
+}
@@ -0,0 +1,339 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes timeline entries, and the project rows they explain, through a
+ * bounded queue drained by one writer thread. Whatever has accumulated is
+ * written in a single transaction: every queued {@link Write} applies its
+ * row updates, then all of their entries are inserted as multi-row INSERTs
+ * and added to {@link DailyRollupService}. A batch that fails is retried in
+ * place with backoff, up to {@code app.timeline.writer.max-attempts} times,
+ * so later writes wait behind it; after that every write in it is told it
+ * failed. The queue is drained completely on shutdown.
+ * <p>
+ * Producers take a slot before queueing. {@link #append} waits up to the
+ * configured offer timeout for one; a caller that must queue while holding a
+ * lock takes it beforehand with {@link #reserve} and then queues with
+ * {@link #submit}, which cannot fail for lack of room.
+ */
+@Service
+public class TimelineWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineWriter.class);
+
+    private static final String INSERT_PREFIX = "INSERT INTO \"timeline_entries\" " +
+        "(\"project_id\", \"event_type\", \"timestamp\", \"description\", \"duration_ms\", \"username\") VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?)";
+    private static final long RETRY_MAX_BACKOFF_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DailyRollupService dailyRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    // One permit per queued write; the queue itself is unbounded so a write
+    // queued in a reserved slot is never refused
+    private final Semaphore slots;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final int maxAttempts;
+    private final Timer writeTimer;
+    private final DistributionSummary batchSizes;
+
+    private final Thread writerThread = new Thread(this::run, "timeline-writer");
+    private volatile boolean running = true;
+
+    /**
+     * Work that has to commit together with timeline entries. Every method
+     * runs on the writer thread, in queue order.
+     */
+    public interface Write {
+
+        /**
+         * Makes the write's row updates inside the batch's transaction and
+         * returns the entries to insert with them. Runs again if the batch
+         * is retried.
+         */
+        List<TimelineEntry> apply();
+
+        /**
+         * Called once the batch has committed.
+         */
+        void committed();
+
+        /**
+         * Called once the batch has failed for the last time; nothing the
+         * write applied was kept.
+         */
+        void failed(RuntimeException e);
+    }
+
+    // A fixed list of entries, or none for a flush
+    private static class EntryWrite implements Write {
+        private final List<TimelineEntry> entries;
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        private EntryWrite(List<TimelineEntry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public List<TimelineEntry> apply() {
+            return entries;
+        }
+
+        @Override
+        public void committed() {
+            persisted.complete(null);
+        }
+
+        @Override
+        public void failed(RuntimeException e) {
+            persisted.completeExceptionally(e);
+        }
+    }
+
+    @Autowired
+    public TimelineWriter(JdbcTemplate jdbcTemplate,
+                          DailyRollupService dailyRollupService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.timeline.writer.queue-capacity:10000}") int queueCapacity,
+                          @Value("${app.timeline.writer.batch-size:256}") int batchSize,
+                          @Value("${app.timeline.writer.offer-timeout-ms:5000}") long offerTimeoutMs,
+                          @Value("${app.timeline.writer.max-attempts:5}") int maxAttempts,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dailyRollupService = dailyRollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.slots = new Semaphore(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.writeTimer = Timer.builder("devclock.timeline.write")
+            .description("Time to write and commit one batch of project rows and timeline entries")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("devclock.timeline.batch")
+            .description("Timeline entries per batch")
+            .baseUnit("entries")
+            .register(meterRegistry);
+        Gauge.builder("devclock.timeline.queue", queue, BlockingQueue::size)
+            .description("Writes waiting to be committed")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public CompletableFuture<Void> append(TimelineEntry entry) {
+        if (entry.getProjectId() == null) {
+            throw new IllegalArgumentException("Timeline entry has no project");
+        }
+        return enqueue(new EntryWrite(Collections.singletonList(entry)));
+    }
+
+    /**
+     * Completes once every write queued before this call has been committed.
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(new EntryWrite(Collections.<TimelineEntry>emptyList()));
+    }
+
+    private CompletableFuture<Void> enqueue(EntryWrite write) {
+        reserve();
+        try {
+            submit(write);
+        } catch (RuntimeException e) {
+            unreserve();
+            throw e;
+        }
+        return write.persisted;
+    }
+
+    /**
+     * Takes a slot in the queue for a later {@link #submit}, waiting up to
+     * the offer timeout for one.
+     */
+    public void reserve() {
+        try {
+            if (!slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Timeline writer queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a timeline write", e);
+        }
+    }
+
+    /**
+     * Takes a slot if one is free right away.
+     */
+    public boolean tryReserve() {
+        return slots.tryAcquire();
+    }
+
+    /**
+     * Gives back a slot that was reserved but not used.
+     */
+    public void unreserve() {
+        slots.release();
+    }
+
+    /**
+     * Queues a write in a slot taken by {@link #reserve} or
+     * {@link #tryReserve}; the slot is given back once the write is done
+     * with. If the writer has shut down this throws and the slot stays the
+     * caller's.
+     */
+    public void submit(Write write) {
+        if (!running) {
+            throw new IllegalStateException("Timeline writer is shut down");
+        }
+        queue.add(write);
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                slots.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Write> batch) {
+        long backoffMs = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                int entries = writeTimer.record(() -> transactionTemplate.execute(status -> writeOnce(batch)));
+                if (entries > 0) {
+                    batchSizes.record(entries);
+                }
+                for (Write write : batch) {
+                    notify(write, null);
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || Thread.currentThread().isInterrupted()) {
+                    log.error("Failed to write a batch of {} timeline writes after {} attempt(s)",
+                        batch.size(), attempt, e);
+                    for (Write write : batch) {
+                        notify(write, e);
+                    }
+                    return;
+                }
+                log.warn("Failed to write a batch of {} timeline writes, retrying in {} ms",
+                    batch.size(), backoffMs, e);
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            backoffMs = Math.min(backoffMs * 2, RETRY_MAX_BACKOFF_MS);
+        }
+    }
+
+    private int writeOnce(List<Write> batch) {
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (Write write : batch) {
+            entries.addAll(write.apply());
+        }
+        insertAll(entries);
+        return entries.size();
+    }
+
+    private static void notify(Write write, RuntimeException failure) {
+        try {
+            if (failure == null) {
+                write.committed();
+            } else {
+                write.failed(failure);
+            }
+        } catch (RuntimeException e) {
+            log.error("Timeline write callback failed", e);
+        }
+    }
+
+    /**
+     * Inserts the entries and their rollups right away. Must be called inside
+     * the caller's transaction.
+     */
+    void insertAll(List<TimelineEntry> entries) {
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            insert(entries.subList(from, Math.min(entries.size(), from + batchSize)));
+        }
+        dailyRollupService.record(entries);
+    }
+
+    private void insert(List<TimelineEntry> entries) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        for (int i = 0; i < entries.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(ROW_PLACEHOLDERS);
+        }
+
+        jdbcTemplate.update(sql.toString(), (PreparedStatement ps) -> {
+            int index = 1;
+            for (TimelineEntry entry : entries) {
+                ps.setLong(index++, entry.getProjectId());
+                ps.setString(index++, entry.getEventType());
+                ps.setTimestamp(index++, Timestamp.valueOf(entry.getTimestamp()));
+                ps.setString(index++, entry.getDescription());
+                if (entry.getDurationMs() != null) {
+                    ps.setLong(index++, entry.getDurationMs());
+                } else {
+                    ps.setNull(index++, Types.BIGINT);
+                }
+                ps.setString(index++, entry.getUsername());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        if (writerThread.isAlive()) {
+            log.warn("Timeline writer did not drain within 30 seconds, {} writes pending", queue.size());
+        }
+    }
+}
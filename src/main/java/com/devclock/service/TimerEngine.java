@@ -0,0 +1,741 @@
+package com.devclock.service;
+
+import com.devclock.model.BulkTimerResult;
+import com.devclock.model.Project;
+import com.devclock.model.ProjectView;
+import com.devclock.model.TimelineEntry;
+import com.devclock.repository.ProjectRepository;
+import com.devclock.repository.TimelineEntryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Owns the live timer state of every project. Transitions are applied in
+ * memory under a per-project lock; project rows are queued to
+ * {@link TimelineWriter} in the order the transitions were applied, together
+ * with the timeline entries that record them, and its writer thread commits
+ * whatever has accumulated, across projects, in one transaction. A
+ * transition takes a slot in that queue first, waiting up to
+ * {@code app.timeline.writer.offer-timeout-ms}, and is refused, unapplied,
+ * when there is none. A batch that fails for good drops its timers from
+ * memory, so they reload from their rows, and the writes still queued
+ * behind it for those timers are dropped unwritten rather than committed on
+ * top of totals that never were. The timeline is the source of truth for
+ * the totals ({@link TimerLedger} rebuilds rows from it), and a row is only
+ * ever written in the transaction that appends its entries.
+ * <p>
+ * A toggle answers only once its write has committed, waiting up to
+ * {@code app.timer.commit-timeout-ms}; one that failed, was dropped or timed
+ * out throws, and after a timeout the change may still commit later.
+ * <p>
+ * Every running timer also has an auto-stop deadline in a
+ * {@link TimingWheel}: {@code app.timer.auto-stop.idle-limit-minutes} after
+ * its last transition, or the next {@code app.timer.auto-stop.cutoff}
+ * wall-clock time, whichever comes first. A timer still running at its
+ * deadline is stopped as of the deadline, so forgotten timers stop counting
+ * there rather than when somebody notices.
+ * <p>
+ * Other cluster nodes hear about a transition once its row has committed,
+ * so they never reload a row older than the change.
+ * <p>
+ * In a cluster a node only holds the timers whose lease it owns (see
+ * {@link ClusterCoordinator}); asking for any other one throws
+ * {@link ProjectOwnedElsewhereException}, and its row writes are fenced by
+ * the lease token; a fenced-off write appends no entries either.
+ */
+@Service
+@DependsOn("timerLedger") // Rows are rebuilt from the timeline before timers load from them
+public class TimerEngine implements ClusterCoordinator.LeaseListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerEngine.class);
+
+    static final String AUTO_STOP_USERNAME = "system";
+    private static final String TIMER_STOPPED_DESCRIPTION = "All timers stopped";
+    private static final long AUTO_STOP_TICK_MS = 1000;
+    private static final List<String> START_EVENT_TYPES = Arrays.asList("START_DEV", "START_WAIT");
+
+    private final ConcurrentMap<Long, ProjectTimer> timers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService autoStopTicker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timer-auto-stop");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ProjectRepository projectRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final TimelineWriter timelineWriter;
+    private final ProjectSnapshotCache projectSnapshotCache;
+    private final ProjectEventPublisher projectEventPublisher;
+    private final ClusterCoordinator clusterCoordinator;
+    private final ClusterReplicator clusterReplicator;
+    private final MeterRegistry meterRegistry;
+    private final Timer persistTimer;
+    private final Timer bulkToggleTimer;
+    // Indexed by the ordinals of the state left and the state entered
+    private final Timer[][] toggleTimers;
+    private final long idleLimitMinutes;
+    private final LocalTime cutoff;
+    private final long commitTimeoutMs;
+    private final TimingWheel<ProjectTimer> autoStopWheel =
+        new TimingWheel<>(AUTO_STOP_TICK_MS, 4096, System.currentTimeMillis());
+
+    @Autowired
+    public TimerEngine(ProjectRepository projectRepository,
+                       TimelineEntryRepository timelineEntryRepository,
+                       TimelineWriter timelineWriter,
+                       ProjectSnapshotCache projectSnapshotCache,
+                       ProjectEventPublisher projectEventPublisher,
+                       ClusterCoordinator clusterCoordinator,
+                       @Lazy ClusterReplicator clusterReplicator,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.timer.auto-stop.idle-limit-minutes:600}") long idleLimitMinutes,
+                       @Value("${app.timer.auto-stop.cutoff:}") String cutoff,
+                       @Value("${app.timer.commit-timeout-ms:30000}") long commitTimeoutMs) {
+        this.projectRepository = projectRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.timelineWriter = timelineWriter;
+        this.projectSnapshotCache = projectSnapshotCache;
+        this.projectEventPublisher = projectEventPublisher;
+        this.clusterCoordinator = clusterCoordinator;
+        this.clusterReplicator = clusterReplicator;
+        this.meterRegistry = meterRegistry;
+        this.idleLimitMinutes = idleLimitMinutes;
+        this.cutoff = StringUtils.hasText(cutoff) ? LocalTime.parse(cutoff.trim()) : null;
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.persistTimer = Timer.builder("devclock.timer.persist")
+            .description("Time from queueing the rows and timeline entries of one toggle or bulk toggle until they "
+                + "commit")
+            .register(meterRegistry);
+        Project.TimerState[] states = Project.TimerState.values();
+        this.toggleTimers = new Timer[states.length][states.length];
+        for (Project.TimerState from : states) {
+            for (Project.TimerState to : states) {
+                toggleTimers[from.ordinal()][to.ordinal()] = Timer.builder("devclock.timer.toggle")
+                    .description("Time to apply a timer transition, including waiting for the project lock")
+                    .tag("from", from.name())
+                    .tag("to", to.name())
+                    .register(meterRegistry);
+            }
+        }
+        this.bulkToggleTimer = Timer.builder("devclock.timer.bulk")
+            .description("Time to apply a bulk timer transition, including waiting for the project locks")
+            .register(meterRegistry);
+        Gauge.builder("devclock.timer.loaded", timers, ConcurrentMap::size)
+            .description("Project timers held in memory")
+            .register(meterRegistry);
+        Gauge.builder("devclock.timer.auto-stop.scheduled", autoStopWheel, TimingWheel::size)
+            .description("Running timers with an auto-stop deadline")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Loads every running timer once, before the application reports ready,
+     * so the first toggles and list requests find them in memory and each
+     * has its auto-stop deadline; after that deadlines follow transitions and
+     * nothing scans the table again.
+     */
+    @PostConstruct
+    public void start() {
+        clusterCoordinator.addListener(this);
+        for (Project project : projectRepository.findActiveProjects()) {
+            try {
+                register(project, clusterCoordinator.acquire(project.getId()));
+            } catch (ProjectOwnedElsewhereException e) {
+                // Its owner holds the timer and schedules the auto-stop
+            }
+        }
+        if (isAutoStopEnabled()) {
+            autoStopTicker.scheduleAtFixedRate(this::autoStopSafely, AUTO_STOP_TICK_MS, AUTO_STOP_TICK_MS,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getLoadedCount() {
+        return timers.size();
+    }
+
+    /**
+     * Applies a transition and returns the project once it has committed.
+     */
+    public Project toggle(Long projectId, Project.TimerState newState, String username) {
+        long start = System.nanoTime();
+        // Waiting for a slot must not hold the monitor, which would pin the
+        // carrier of a virtual thread and stall other toggles of the project
+        timelineWriter.reserve();
+        TimerBatch batch;
+        try {
+            while (true) {
+                ProjectTimer timer = timerFor(projectId);
+                synchronized (timer) {
+                    if (timer.isReleased()) {
+                        continue;
+                    }
+                    batch = toggleLocked(timer, newState, username, start);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            timelineWriter.unreserve();
+            throw e;
+        }
+        if (!awaitCommitted(batch).isEmpty()) {
+            throw new IllegalStateException("Timer change for project " + projectId + " was not saved");
+        }
+        return batch.writes.get(0).project;
+    }
+
+    // Called with the timer monitor held and a writer slot reserved
+    private TimerBatch toggleLocked(ProjectTimer timer, Project.TimerState newState, String username, long start) {
+        if (timer.isRemoved()) {
+            throw new IllegalArgumentException("Project not found");
+        }
+
+        Project.TimerState previousState = timer.getState();
+        TimerBatch batch = enqueueWrites(Collections.singletonList(apply(timer, newState, username,
+            System.currentTimeMillis(), System.nanoTime(), TIMER_STOPPED_DESCRIPTION)));
+
+        toggleTimers[previousState.ordinal()][newState.ordinal()]
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return batch;
+    }
+
+    /**
+     * Moves every listed project that is not already in {@code newState} to
+     * it, at one instant, and writes all of their rows in a single
+     * transaction, returning once it has committed. Returns one result per
+     * distinct id, in id order, except for projects owned by other cluster
+     * nodes, which are added to {@code elsewhere} under their owner's URL
+     * instead. A project whose write was dropped after being applied, because
+     * the node lost it or an earlier write for it failed, is reported as
+     * {@link BulkTimerResult.Status#FAILED}.
+     */
+    public List<BulkTimerResult> toggleAll(Collection<Long> projectIds, Project.TimerState newState, String username,
+                                           Map<String, List<Long>> elsewhere) {
+        long start = System.nanoTime();
+        List<BulkTimerResult> results = new ArrayList<>();
+        List<ProjectTimer> timers = new ArrayList<>();
+        for (Long projectId : new TreeSet<>(projectIds)) {
+            try {
+                timers.add(timerFor(projectId));
+            } catch (IllegalArgumentException e) {
+                results.add(BulkTimerResult.notFound(projectId));
+            } catch (ProjectOwnedElsewhereException e) {
+                if (e.getOwnerUrl() == null) {
+                    throw new IllegalStateException(e.getMessage());
+                }
+                elsewhere.computeIfAbsent(e.getOwnerUrl(), url -> new ArrayList<>()).add(projectId);
+            }
+        }
+
+        timelineWriter.reserve();
+        TimerBatch batch;
+        try {
+            batch = applyLocked(timers, 0, newState, username, System.currentTimeMillis(), System.nanoTime(),
+                results, new ArrayList<>(timers.size()));
+        } catch (RuntimeException e) {
+            timelineWriter.unreserve();
+            throw e;
+        }
+        if (batch == null) {
+            timelineWriter.unreserve();
+        } else {
+            List<Long> unwritten = awaitCommitted(batch);
+            for (int i = 0; i < results.size(); i++) {
+                if (unwritten.contains(results.get(i).getProjectId())) {
+                    results.set(i, BulkTimerResult.failed(results.get(i).getProjectId()));
+                }
+            }
+        }
+        results.sort(Comparator.comparing(BulkTimerResult::getProjectId));
+
+        bulkToggleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return results;
+    }
+
+    // Takes the monitors in ascending project id order, the only order in
+    // which more than one is ever held, and queues the combined write before
+    // releasing any of them so it stays in order with single toggles.
+    // Returns the queued write, or null if nothing changed.
+    private TimerBatch applyLocked(List<ProjectTimer> timers, int index, Project.TimerState newState, String username,
+                                long nowMs, long nowNanos, List<BulkTimerResult> results, List<TimerWrite> writes) {
+        if (index == timers.size()) {
+            return writes.isEmpty() ? null : enqueueWrites(writes);
+        }
+
+        ProjectTimer timer = timers.get(index);
+        synchronized (timer) {
+            if (timer.isReleased()) {
+                // Lost to another node since it was looked up; rare enough
+                // to let the client retry
+                throw new IllegalStateException("Project " + timer.getProjectId() + " moved to another node");
+            } else if (timer.isRemoved()) {
+                results.add(BulkTimerResult.notFound(timer.getProjectId()));
+            } else if (timer.getState() == newState) {
+                results.add(BulkTimerResult.unchanged(timer.toProject()));
+            } else {
+                writes.add(apply(timer, newState, username, nowMs, nowNanos, TIMER_STOPPED_DESCRIPTION));
+                results.add(BulkTimerResult.applied(timer.toProject()));
+            }
+            return applyLocked(timers, index + 1, newState, username, nowMs, nowNanos, results, writes);
+        }
+    }
+
+    public Project withLiveState(Project project) {
+        ProjectTimer timer = timers.get(project.getId());
+        if (timer != null) {
+            synchronized (timer) {
+                timer.applyTo(project);
+            }
+        }
+        return project;
+    }
+
+    public ProjectView withLiveState(ProjectView view) {
+        ProjectTimer timer = timers.get(view.getId());
+        if (timer == null) {
+            return view;
+        }
+        synchronized (timer) {
+            return timer.applyTo(view);
+        }
+    }
+
+    public List<ProjectView> withLiveState(List<ProjectView> views) {
+        List<ProjectView> result = new ArrayList<>(views.size());
+        for (ProjectView view : views) {
+            result.add(withLiveState(view));
+        }
+        return result;
+    }
+
+    public void refreshDescriptor(Project project) {
+        ProjectTimer timer = timers.get(project.getId());
+        if (timer != null) {
+            synchronized (timer) {
+                timer.updateDescriptor(project);
+            }
+        }
+    }
+
+    public void remove(Long projectId) {
+        ProjectTimer timer = timers.remove(projectId);
+        if (timer != null) {
+            synchronized (timer) {
+                timer.markRemoved();
+                scheduleAutoStop(timer);
+            }
+        }
+    }
+
+    ProjectTimer timerFor(Long projectId) {
+        long leaseToken = clusterCoordinator.acquire(projectId);
+        ProjectTimer timer = timers.get(projectId);
+        if (timer != null && timer.getLeaseToken() == leaseToken) {
+            return timer;
+        }
+        if (timer != null) {
+            // Held under an earlier lease; another node may have moved it on
+            release(timer);
+        }
+        Project project = projectRepository.findById(projectId)
+            .orElseThrow(() -> new IllegalArgumentException("Project not found"));
+        return register(project, leaseToken);
+    }
+
+    private ProjectTimer register(Project project, long leaseToken) {
+        // Looked up before any monitor is taken, so the auto-stop can credit
+        // the session without touching the database
+        String sessionUsername = null;
+        if (project.getCurrentState() != null && project.getCurrentState() != Project.TimerState.STOPPED) {
+            sessionUsername = timelineEntryRepository
+                .findFirstByProjectIdAndEventTypeInOrderByTimestampDescIdDesc(project.getId(), START_EVENT_TYPES)
+                .map(TimelineEntry::getUsername)
+                .orElse(null);
+        }
+        ProjectTimer created = new ProjectTimer(project, System.currentTimeMillis(), System.nanoTime());
+        created.setLeaseToken(leaseToken);
+        created.setSessionUsername(sessionUsername);
+        ProjectTimer existing = timers.putIfAbsent(project.getId(), created);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (created) {
+            scheduleAutoStop(created);
+        }
+        return created;
+    }
+
+    private void release(ProjectTimer timer) {
+        timers.remove(timer.getProjectId(), timer);
+        synchronized (timer) {
+            timer.markReleased();
+            if (timer.getAutoStop() != null) {
+                timer.getAutoStop().cancel();
+                timer.setAutoStop(null);
+            }
+        }
+    }
+
+    @Override
+    public void leaseLost(Long projectId) {
+        ProjectTimer timer = timers.get(projectId);
+        if (timer != null) {
+            release(timer);
+        }
+    }
+
+    @Override
+    public void leaseAdopted(Long projectId) {
+        try {
+            timerFor(projectId);
+        } catch (IllegalArgumentException | ProjectOwnedElsewhereException e) {
+            log.debug("Did not adopt project {}: {}", projectId, e.getMessage());
+        }
+    }
+
+    private boolean isAutoStopEnabled() {
+        return idleLimitMinutes > 0 || cutoff != null;
+    }
+
+    private static class AutoStop {
+        private final long deadlineMs;
+        private final String reason;
+        private final String description;
+
+        private AutoStop(long deadlineMs, String reason, String description) {
+            this.deadlineMs = deadlineMs;
+            this.reason = reason;
+            this.description = description;
+        }
+    }
+
+    // Called with the timer monitor held
+    private AutoStop autoStopFor(ProjectTimer timer) {
+        if (timer.isRemoved() || !timer.isActive()) {
+            return null;
+        }
+        long sinceMs = timer.getLastStateChangeMs();
+        AutoStop autoStop = null;
+        if (idleLimitMinutes > 0) {
+            autoStop = new AutoStop(sinceMs + TimeUnit.MINUTES.toMillis(idleLimitMinutes), "idle",
+                "Stopped automatically after " + idleLimitMinutes + " minutes without a change");
+        }
+        if (cutoff != null) {
+            LocalDateTime since = ProjectTimer.toDateTime(sinceMs);
+            LocalDateTime nextCutoff = since.toLocalDate().atTime(cutoff);
+            if (!nextCutoff.isAfter(since)) {
+                nextCutoff = nextCutoff.plusDays(1);
+            }
+            long cutoffMs = nextCutoff.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (autoStop == null || cutoffMs < autoStop.deadlineMs) {
+                autoStop = new AutoStop(cutoffMs, "cutoff", "Stopped automatically at the " + cutoff + " cutoff");
+            }
+        }
+        return autoStop;
+    }
+
+    // Called with the timer monitor held, after every transition
+    private void scheduleAutoStop(ProjectTimer timer) {
+        if (timer.getAutoStop() != null) {
+            timer.getAutoStop().cancel();
+            timer.setAutoStop(null);
+        }
+        AutoStop autoStop = autoStopFor(timer);
+        if (autoStop != null) {
+            timer.setAutoStop(autoStopWheel.schedule(autoStop.deadlineMs, timer));
+        }
+    }
+
+    private void autoStopSafely() {
+        try {
+            List<Project> stopped = new ArrayList<>();
+            for (ProjectTimer timer : autoStopWheel.expire(System.currentTimeMillis())) {
+                Project project = autoStop(timer);
+                if (project != null) {
+                    stopped.add(project);
+                }
+            }
+            if (!stopped.isEmpty()) {
+                projectSnapshotCache.invalidate();
+                projectEventPublisher.timersUpdated(stopped);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to auto-stop timers", e);
+        }
+    }
+
+    private Project autoStop(ProjectTimer timer) {
+        try {
+            if (clusterCoordinator.acquire(timer.getProjectId()) != timer.getLeaseToken()) {
+                release(timer);
+                return null;
+            }
+        } catch (ProjectOwnedElsewhereException e) {
+            release(timer);
+            return null;
+        }
+        boolean reserved = timelineWriter.tryReserve();
+        Project stopped = null;
+        try {
+            stopped = autoStopLocked(timer, reserved);
+            return stopped;
+        } finally {
+            if (reserved && stopped == null) {
+                timelineWriter.unreserve();
+            }
+        }
+    }
+
+    // Stops the timer if its deadline has passed, using the writer slot the
+    // caller reserved before taking the monitor. Returns null, leaving the
+    // slot with the caller, when nothing was queued.
+    private Project autoStopLocked(ProjectTimer timer, boolean reserved) {
+        synchronized (timer) {
+            if (timer.isReleased()) {
+                return null;
+            }
+            timer.setAutoStop(null);
+            AutoStop autoStop = autoStopFor(timer);
+            if (autoStop == null) {
+                return null;
+            }
+            if (autoStop.deadlineMs > System.currentTimeMillis()) {
+                // Moved by a transition after the wheel handed it out
+                scheduleAutoStop(timer);
+                return null;
+            }
+            if (!reserved) {
+                // Writer backed up; the deadline is past, so it comes round
+                // again on the next tick
+                scheduleAutoStop(timer);
+                return null;
+            }
+
+            // Time is credited to whoever started the session
+            String username = timer.getSessionUsername() != null ? timer.getSessionUsername() : AUTO_STOP_USERNAME;
+            enqueueWrites(Collections.singletonList(apply(timer, Project.TimerState.STOPPED, username,
+                autoStop.deadlineMs, timer.nanosAt(autoStop.deadlineMs), autoStop.description)));
+            meterRegistry.counter("devclock.timer.auto-stopped", "reason", autoStop.reason).increment();
+            log.info("Auto-stopped project {}: {}", timer.getProjectId(), autoStop.description);
+            return timer.toProject();
+        }
+    }
+
+    private TimelineEntry stopEntry(String eventType, LocalDateTime now, String description,
+                                    String username, long elapsedMs) {
+        TimelineEntry entry = new TimelineEntry(null, eventType, now, description, username);
+        entry.setDurationMs(elapsedMs);
+        return entry;
+    }
+
+    private static class TimerWrite {
+        private final ProjectTimer timer;
+        private final Long projectId;
+        private final Project.TimerState state;
+        private final long lastStateChangeMs;
+        private final long devTimeMs;
+        private final long waitTimeMs;
+        private final long leaseToken;
+        private final List<TimelineEntry> entries;
+        private final Project project;
+
+        private TimerWrite(ProjectTimer timer, List<TimelineEntry> entries) {
+            this.timer = timer;
+            this.entries = entries;
+            this.project = timer.toProject();
+            this.projectId = timer.getProjectId();
+            this.state = timer.getState();
+            this.lastStateChangeMs = timer.getLastStateChangeMs();
+            this.devTimeMs = timer.getDevTimeMs();
+            this.waitTimeMs = timer.getWaitTimeMs();
+            this.leaseToken = timer.getLeaseToken();
+        }
+    }
+
+    // Called with the timer monitor held so timeline entries for a project
+    // are appended in the same order as its transitions.
+    private TimerWrite apply(ProjectTimer timer, Project.TimerState newState, String username, long nowMs,
+                             long nowNanos, String stoppedDescription) {
+        Project.TimerState previousState = timer.getState();
+        boolean wasActive = timer.isActive();
+        long elapsedMs = timer.transition(newState, nowMs, nowNanos);
+        LocalDateTime now = ProjectTimer.toDateTime(nowMs);
+
+        List<TimelineEntry> entries = new ArrayList<>(2);
+        if (wasActive) {
+            if (previousState == Project.TimerState.DEV_ACTIVE) {
+                entries.add(stopEntry("STOP_DEV", now, "Development work ended", username, elapsedMs));
+            } else if (previousState == Project.TimerState.WAIT_ACTIVE) {
+                entries.add(stopEntry("STOP_WAIT", now, "Customer wait ended", username, elapsedMs));
+            }
+        }
+
+        if (newState == Project.TimerState.DEV_ACTIVE) {
+            entries.add(new TimelineEntry(null, "START_DEV", now, "Development work started", username));
+        } else if (newState == Project.TimerState.WAIT_ACTIVE) {
+            entries.add(new TimelineEntry(null, "START_WAIT", now, "Customer wait started", username));
+        } else if (newState == Project.TimerState.STOPPED) {
+            entries.add(new TimelineEntry(null, "TIMER_STOPPED", now, stoppedDescription, username));
+        }
+
+        for (TimelineEntry entry : entries) {
+            entry.setProjectId(timer.getProjectId());
+        }
+        timer.setSessionUsername(timer.isActive() ? username : null);
+        scheduleAutoStop(timer);
+        return new TimerWrite(timer, entries);
+    }
+
+    // The rows of one toggle or bulk toggle and the entries that record
+    // them. The timeline entries commit with the rows, so the totals never
+    // run ahead of or behind the sessions that make them up.
+    private class TimerBatch implements TimelineWriter.Write {
+        private final List<TimerWrite> writes;
+        private final long queuedNanos = System.nanoTime();
+        // Projects whose row write was fenced off in the last attempt
+        private final List<Long> fenced = new ArrayList<>();
+        // Projects skipped in the last attempt, fenced or not
+        private final List<Long> unwritten = new ArrayList<>();
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        private TimerBatch(List<TimerWrite> writes) {
+            this.writes = writes;
+        }
+
+        @Override
+        public List<TimelineEntry> apply() {
+            fenced.clear();
+            unwritten.clear();
+            List<TimelineEntry> entries = new ArrayList<>(writes.size() * 2);
+            for (TimerWrite write : writes) {
+                if (write.timer.isReleased()) {
+                    // Dropped after an earlier write failed, or lost to
+                    // another node; its row is reloaded as it stands
+                    unwritten.add(write.projectId);
+                    continue;
+                }
+                LocalDateTime lastStateChange = ProjectTimer.toDateTime(write.lastStateChangeMs);
+                if (!clusterCoordinator.isEnabled()) {
+                    projectRepository.updateTimerState(write.projectId, write.state, lastStateChange,
+                        write.devTimeMs, write.waitTimeMs, lastStateChange);
+                } else if (projectRepository.updateTimerStateFenced(write.projectId, write.state,
+                    lastStateChange, write.devTimeMs, write.waitTimeMs, lastStateChange,
+                    clusterCoordinator.getNodeId(), write.leaseToken) == 0) {
+                    fenced.add(write.projectId);
+                    unwritten.add(write.projectId);
+                    continue;
+                }
+                entries.addAll(write.entries);
+            }
+            return entries;
+        }
+
+        @Override
+        public void committed() {
+            persistTimer.record(System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS);
+            for (Long projectId : fenced) {
+                // Deleted, or taken over by a node that reloads it from the
+                // row this write did not touch
+                log.warn("Dropped a timer write for project {}: this node no longer owns it", projectId);
+                clusterCoordinator.leaseLost(projectId);
+                leaseLost(projectId);
+            }
+            announce(writes, unwritten);
+            persisted.complete(null);
+        }
+
+        @Override
+        public void failed(RuntimeException e) {
+            log.error("Failed to persist timer state for {} project(s); reloading them from the database",
+                writes.size(), e);
+            discard(writes);
+            persisted.completeExceptionally(e);
+        }
+    }
+
+    // Called with the monitors of every affected timer held, and a writer
+    // slot reserved, so writes for a project are queued in the same order as
+    // its transitions
+    private TimerBatch enqueueWrites(List<TimerWrite> writes) {
+        TimerBatch batch = new TimerBatch(writes);
+        timelineWriter.submit(batch);
+        return batch;
+    }
+
+    // Waits for a queued batch to commit and returns the projects it left
+    // unwritten
+    private List<Long> awaitCommitted(TimerBatch batch) {
+        try {
+            batch.persisted.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to save the timer change", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timer change was not saved within " + commitTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving the timer change", e);
+        }
+        return batch.unwritten;
+    }
+
+    private void announce(List<TimerWrite> writes, List<Long> unwritten) {
+        try {
+            for (TimerWrite write : writes) {
+                if (!unwritten.contains(write.projectId)) {
+                    clusterReplicator.announce(write.projectId, null, write.project, false);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to announce timer changes for {} project(s)", writes.size(), e);
+        }
+    }
+
+    // Drops the in-memory timers of a write that could not be persisted, so
+    // they are reloaded from the rows and entries that did commit; writes
+    // already queued for them are skipped as released.
+    private void discard(List<TimerWrite> writes) {
+        for (TimerWrite write : writes) {
+            release(write.timer);
+        }
+        projectSnapshotCache.invalidate();
+    }
+
+    // Queued writes are drained by TimelineWriter, which outlives this bean
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        autoStopTicker.shutdownNow();
+        autoStopTicker.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,622 @@
+package com.devclock.service;
+
+import com.devclock.model.LedgerReport;
+import com.devclock.model.Project;
+import com.devclock.model.TimelineEntry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Derives every project's timer state from its timeline, the append-only
+ * record of what happened. The state and totals on the project rows are a
+ * projection of it, which {@link TimerEngine} keeps in step by queueing both
+ * to {@link TimelineWriter}, which commits them in the same batch
+ * transaction.
+ * <p>
+ * {@code ledger_checkpoints} holds each project's replayed state up to a
+ * timeline entry id. At startup only the entries after the newest checkpoint
+ * are replayed on top of the checkpoints, and rows that disagree are rebuilt
+ * from the result; the leader moves the checkpoints forward every
+ * {@code app.timer.ledger.checkpoint-interval-minutes}. The first startup
+ * without checkpoints replays all history, archive included, and appends
+ * ADJUST_DEV and ADJUST_WAIT entries carrying over whatever the rows counted
+ * that the timeline does not, such as time tracked before timelines were
+ * recorded.
+ * <p>
+ * {@link #verify} replays all history from scratch, in parallel across
+ * projects, and reports every row or checkpoint that disagrees with it.
+ */
+@Service
+public class TimerLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerLedger.class);
+
+    static final String ADJUST_DEV = "ADJUST_DEV";
+    static final String ADJUST_WAIT = "ADJUST_WAIT";
+    private static final String OPENING_USERNAME = "system";
+    private static final String OPENING_DESCRIPTION = "Opening balance carried over from the project totals";
+
+    private static final int CHUNK_SIZE = 256;
+    private static final int MAX_REPORTED_MISMATCHES = 1000;
+
+    private static final String ENTRY_COLUMNS = "SELECT \"id\", \"project_id\", \"event_type\", \"timestamp\", " +
+        "\"duration_ms\" FROM \"timeline_entries\" ";
+    private static final String SELECT_TAIL = ENTRY_COLUMNS + "WHERE \"id\" > ? ORDER BY \"id\"";
+    private static final String SELECT_PROJECT_ENTRIES = ENTRY_COLUMNS + "WHERE \"project_id\" BETWEEN ? AND ? " +
+        "ORDER BY \"project_id\", \"id\"";
+
+    private static final String ROW_COLUMNS = "SELECT \"id\", \"current_state\", \"last_state_change\", " +
+        "\"dev_time_ms\", \"wait_time_ms\" FROM \"projects\" ";
+    private static final String SELECT_PROJECT_IDS = "SELECT \"id\" FROM \"projects\" ORDER BY \"id\"";
+    private static final String UPDATE_ROW = "UPDATE \"projects\" SET \"current_state\" = ?, " +
+        "\"last_state_change\" = COALESCE(?, \"last_state_change\"), \"dev_time_ms\" = ?, " +
+        "\"wait_time_ms\" = ? WHERE \"id\" = ?";
+
+    private static final String CHECKPOINT_COLUMNS = "SELECT \"project_id\", \"current_state\", " +
+        "\"last_state_change\", \"dev_time_ms\", \"wait_time_ms\", \"last_entry_id\" " +
+        "FROM \"ledger_checkpoints\" ";
+    private static final String SELECT_WATERMARK = "SELECT MAX(\"last_entry_id\") FROM \"ledger_checkpoints\"";
+    private static final String UPSERT_CHECKPOINT = "INSERT INTO \"ledger_checkpoints\" (\"project_id\", " +
+        "\"last_entry_id\", \"current_state\", \"last_state_change\", \"dev_time_ms\", \"wait_time_ms\", " +
+        "\"created_at\") VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (\"project_id\") DO UPDATE SET " +
+        "\"last_entry_id\" = excluded.\"last_entry_id\", \"current_state\" = excluded.\"current_state\", " +
+        "\"last_state_change\" = excluded.\"last_state_change\", " +
+        "\"dev_time_ms\" = excluded.\"dev_time_ms\", " +
+        "\"wait_time_ms\" = excluded.\"wait_time_ms\", \"created_at\" = excluded.\"created_at\"";
+    private static final String DELETE_ORPHANED_CHECKPOINTS = "DELETE FROM \"ledger_checkpoints\" " +
+        "WHERE \"project_id\" NOT IN (SELECT \"id\" FROM \"projects\")";
+
+    private static final String SELECT_NEWEST_ENTRY_ID = "SELECT COALESCE(MAX(\"id\"), 0) FROM \"timeline_entries\"";
+    private static final String SELECT_LEASED_ELSEWHERE = "SELECT \"project_id\" FROM \"project_leases\" " +
+        "WHERE \"node_id\" <> ? AND \"expires_at\" >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimelineArchive timelineArchive;
+    private final TimelineWriter timelineWriter;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTransaction;
+    private final MeterRegistry meterRegistry;
+    private final long checkpointIntervalMinutes;
+    private final int verifyParallelism;
+    private final Timer verifyTimer;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timer-ledger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Timer state folded from timeline entries in the order they were
+     * appended. {@code state} and {@code lastStateChange} stay null until a
+     * START_DEV, START_WAIT or TIMER_STOPPED entry is seen.
+     */
+    // Entries may arrive out of id order, archived ones being merged by
+    // timestamp, so the state comes from the state entry with the largest id
+    private static class Replay {
+        private Project.TimerState state;
+        private Long lastStateChange;
+        private long stateEntryId;
+        private long devTimeMs;
+        private long waitTimeMs;
+        private long lastEntryId;
+
+        void apply(long id, String eventType, long timestamp, long durationMs) {
+            switch (eventType) {
+                case "START_DEV":
+                    changeState(id, Project.TimerState.DEV_ACTIVE, timestamp);
+                    break;
+                case "START_WAIT":
+                    changeState(id, Project.TimerState.WAIT_ACTIVE, timestamp);
+                    break;
+                case "TIMER_STOPPED":
+                    changeState(id, Project.TimerState.STOPPED, timestamp);
+                    break;
+                case "STOP_DEV":
+                case ADJUST_DEV:
+                    devTimeMs += durationMs;
+                    break;
+                case "STOP_WAIT":
+                case ADJUST_WAIT:
+                    waitTimeMs += durationMs;
+                    break;
+                default:
+                    break;
+            }
+            lastEntryId = Math.max(lastEntryId, id);
+        }
+
+        private void changeState(long id, Project.TimerState newState, long timestamp) {
+            if (id >= stateEntryId) {
+                state = newState;
+                lastStateChange = timestamp;
+                stateEntryId = id;
+            }
+        }
+
+        void apply(TimelineEntry entry) {
+            apply(entry.getId(), entry.getEventType(), TimelineSegmentFile.millis(entry),
+                entry.getDurationMs() != null ? entry.getDurationMs() : 0L);
+        }
+
+        // Continues base with the entries replayed here
+        Replay onto(Replay base) {
+            Replay combined = base.copy();
+            if (state != null) {
+                combined.state = state;
+                combined.lastStateChange = lastStateChange;
+                combined.stateEntryId = stateEntryId;
+            }
+            combined.devTimeMs += devTimeMs;
+            combined.waitTimeMs += waitTimeMs;
+            combined.lastEntryId = Math.max(base.lastEntryId, lastEntryId);
+            return combined;
+        }
+
+        Replay copy() {
+            Replay copy = new Replay();
+            copy.state = state;
+            copy.lastStateChange = lastStateChange;
+            copy.stateEntryId = stateEntryId;
+            copy.devTimeMs = devTimeMs;
+            copy.waitTimeMs = waitTimeMs;
+            copy.lastEntryId = lastEntryId;
+            return copy;
+        }
+
+        Project.TimerState currentState() {
+            return state != null ? state : Project.TimerState.STOPPED;
+        }
+
+        // Rows and checkpoints share the column order, checkpoints adding the
+        // entry id
+        static Replay read(ResultSet resultSet, boolean checkpoint) throws SQLException {
+            Replay replay = new Replay();
+            replay.state = Project.TimerState.valueOf(resultSet.getString(2));
+            long lastStateChange = resultSet.getLong(3);
+            replay.lastStateChange = resultSet.wasNull() ? null : lastStateChange;
+            replay.devTimeMs = resultSet.getLong(4);
+            replay.waitTimeMs = resultSet.getLong(5);
+            if (checkpoint) {
+                replay.lastEntryId = resultSet.getLong(6);
+            }
+            return replay;
+        }
+    }
+
+    // What the entries after the newest checkpoint change
+    private static class Tail {
+        private final boolean opening;
+        private final long afterId;
+        private final Map<Long, Replay> replays = new TreeMap<>();
+        private final Map<Long, Replay> rows = new TreeMap<>();
+        private long entries;
+
+        private Tail(boolean opening, long afterId) {
+            this.opening = opening;
+            this.afterId = afterId;
+        }
+
+        void apply(TimelineEntry entry) {
+            replays.computeIfAbsent(entry.getProjectId(), id -> new Replay()).apply(entry);
+            entries++;
+        }
+    }
+
+    private static class Verification {
+        private final Replay replay = new Replay();
+        private final Replay checkpoint;
+        // Only the entries the checkpoint covers
+        private final Replay atCheckpoint = new Replay();
+
+        private Verification(Replay checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        void apply(long id, String eventType, long timestamp, long durationMs) {
+            replay.apply(id, eventType, timestamp, durationMs);
+            if (checkpoint != null && id <= checkpoint.lastEntryId) {
+                atCheckpoint.apply(id, eventType, timestamp, durationMs);
+            }
+        }
+    }
+
+    private static class ChunkResult {
+        private int projects;
+        private long entries;
+        private final List<LedgerReport.Mismatch> mismatches = new ArrayList<>();
+    }
+
+    @Autowired
+    public TimerLedger(JdbcTemplate jdbcTemplate,
+                       TimelineArchive timelineArchive,
+                       TimelineWriter timelineWriter,
+                       ClusterCoordinator clusterCoordinator,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.timer.ledger.checkpoint-interval-minutes:15}") long checkpointIntervalMinutes,
+                       @Value("${app.timer.ledger.verify-parallelism:${app.sqlite.read-pool-size:4}}")
+                           int verifyParallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timelineArchive = timelineArchive;
+        this.timelineWriter = timelineWriter;
+        this.clusterCoordinator = clusterCoordinator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.checkpointIntervalMinutes = checkpointIntervalMinutes;
+        this.verifyParallelism = Math.max(1, verifyParallelism);
+        this.verifyTimer = Timer.builder("devclock.ledger.verify")
+            .description("Time to replay all timeline history and compare it with the rows and checkpoints")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Brings the project rows in line with the timeline before any timer is
+     * loaded from them; {@link TimerEngine} depends on this bean for that.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long start = System.nanoTime();
+        Tail tail = readTransaction.execute(status -> readTail(true));
+        Set<Long> leasedElsewhere = clusterCoordinator.isEnabled()
+            ? new HashSet<>(jdbcTemplate.queryForList(SELECT_LEASED_ELSEWHERE, Long.class,
+                clusterCoordinator.getNodeId(), System.currentTimeMillis()))
+            : Collections.<Long>emptySet();
+
+        Integer corrected = transactionTemplate.execute(status -> {
+            List<TimelineEntry> opening = new ArrayList<>();
+            List<Replay> carriedOver = new ArrayList<>();
+            int count = 0;
+            for (Map.Entry<Long, Replay> entry : tail.replays.entrySet()) {
+                Long projectId = entry.getKey();
+                Replay replay = entry.getValue();
+                Replay row = tail.rows.get(projectId);
+                if (row == null || leasedElsewhere.contains(projectId)
+                    || compare(projectId, "row", replay, row, true, new ArrayList<>()) == 0) {
+                    continue;
+                }
+                count++;
+                log.warn("Project {} had {} dev / {} wait ms and state {}; the timeline says {} / {} and {}",
+                    projectId, row.devTimeMs, row.waitTimeMs, row.currentState(),
+                    replay.devTimeMs, replay.waitTimeMs, replay.currentState());
+                if (tail.opening) {
+                    opening.addAll(openingEntries(projectId, replay, row));
+                    carriedOver.add(replay);
+                }
+                if (compare(projectId, "row", replay, row, true, new ArrayList<>()) > 0) {
+                    jdbcTemplate.update(UPDATE_ROW, replay.currentState().name(), replay.lastStateChange,
+                        replay.devTimeMs, replay.waitTimeMs, projectId);
+                }
+            }
+            if (!opening.isEmpty()) {
+                timelineWriter.insertAll(opening);
+                long newest = jdbcTemplate.queryForObject(SELECT_NEWEST_ENTRY_ID, Long.class);
+                for (Replay replay : carriedOver) {
+                    replay.lastEntryId = newest;
+                }
+            }
+            writeCheckpoints(tail);
+            return count;
+        });
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        meterRegistry.timer("devclock.ledger.replay", "phase", "startup").record(elapsedMs, TimeUnit.MILLISECONDS);
+        if (tail.opening) {
+            log.info("Replayed all {} timeline entries of {} projects in {} ms; carried {} project totals over " +
+                "into the timeline", tail.entries, tail.replays.size(), elapsedMs, corrected);
+        } else {
+            log.info("Replayed {} timeline entries after entry {} in {} ms; rebuilt {} project rows from the timeline",
+                tail.entries, tail.afterId, elapsedMs, corrected);
+        }
+
+        if (checkpointIntervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkpointSafely, checkpointIntervalMinutes,
+                checkpointIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Moves every checkpoint forward to the newest entry, so the next
+     * startup has less to replay. Runs on the leader only.
+     */
+    public void checkpoint() {
+        if (!clusterCoordinator.isLeader()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Tail tail = readTransaction.execute(status -> readTail(false));
+        transactionTemplate.executeWithoutResult(status -> {
+            writeCheckpoints(tail);
+            jdbcTemplate.update(DELETE_ORPHANED_CHECKPOINTS);
+        });
+        meterRegistry.timer("devclock.ledger.replay", "phase", "checkpoint")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Checkpointed {} projects after replaying {} timeline entries", tail.replays.size(), tail.entries);
+    }
+
+    /**
+     * Replays every project's whole timeline, in parallel across projects,
+     * and reports each field where the project row or its checkpoint
+     * disagrees. Each batch of projects is read in one transaction, so rows
+     * and entries are compared as of the same commit.
+     */
+    public LedgerReport verify() {
+        long start = System.nanoTime();
+        List<Long> projectIds = readTransaction.execute(status ->
+            jdbcTemplate.queryForList(SELECT_PROJECT_IDS, Long.class));
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(verifyParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-verify-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LedgerReport report = new LedgerReport();
+        try {
+            List<Future<ChunkResult>> chunks = new ArrayList<>();
+            for (int from = 0; from < projectIds.size(); from += CHUNK_SIZE) {
+                List<Long> chunk = projectIds.subList(from, Math.min(projectIds.size(), from + CHUNK_SIZE));
+                chunks.add(pool.submit(() -> readTransaction.execute(status -> verifyChunk(chunk))));
+            }
+            for (Future<ChunkResult> future : chunks) {
+                ChunkResult chunk = future.get();
+                report.setProjectsChecked(report.getProjectsChecked() + chunk.projects);
+                report.setEntriesReplayed(report.getEntriesReplayed() + chunk.entries);
+                report.setMismatchCount(report.getMismatchCount() + chunk.mismatches.size());
+                for (LedgerReport.Mismatch mismatch : chunk.mismatches) {
+                    if (report.getMismatches().size() < MAX_REPORTED_MISMATCHES) {
+                        report.getMismatches().add(mismatch);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying the timer ledger", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to verify the timer ledger", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        verifyTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        report.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        if (report.getMismatchCount() > 0) {
+            log.warn("Ledger verification found {} mismatches across {} projects", report.getMismatchCount(),
+                report.getProjectsChecked());
+        } else {
+            log.info("Ledger verification replayed {} entries of {} projects in {} ms without a mismatch",
+                report.getEntriesReplayed(), report.getProjectsChecked(), report.getElapsedMs());
+        }
+        return report;
+    }
+
+    private void checkpointSafely() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            log.warn("Failed to checkpoint the timer ledger", e);
+        }
+    }
+
+    // Must run inside a read transaction, so the archive catalog, the
+    // entries and the checkpoints agree
+    private Tail readTail(boolean withRows) {
+        Long watermark = jdbcTemplate.queryForObject(SELECT_WATERMARK, Long.class);
+        Tail tail = new Tail(watermark == null, watermark != null ? watermark : 0L);
+        if (tail.opening) {
+            timelineArchive.scan(null, Long.MIN_VALUE, Long.MAX_VALUE, entry -> {
+                tail.apply(entry);
+                return true;
+            });
+        } else {
+            timelineArchive.scanAfter(tail.afterId, tail::apply);
+        }
+        jdbcTemplate.query(SELECT_TAIL, resultSet -> {
+            long duration = resultSet.getLong(5);
+            tail.replays.computeIfAbsent(resultSet.getLong(2), id -> new Replay()).apply(resultSet.getLong(1),
+                resultSet.getString(3), resultSet.getLong(4), resultSet.wasNull() ? 0L : duration);
+            tail.entries++;
+        }, tail.afterId);
+
+        if (tail.opening) {
+            // Every project gets a checkpoint, including those with no
+            // entries, so the next startup knows it is not the first
+            for (Long projectId : jdbcTemplate.queryForList(SELECT_PROJECT_IDS, Long.class)) {
+                tail.replays.computeIfAbsent(projectId, id -> new Replay());
+            }
+        } else {
+            forEachChunk(tail.replays.keySet(), CHECKPOINT_COLUMNS + "WHERE \"project_id\" IN ", resultSet -> {
+                Long projectId = resultSet.getLong(1);
+                tail.replays.put(projectId, tail.replays.get(projectId).onto(Replay.read(resultSet, true)));
+            });
+        }
+        if (withRows) {
+            forEachChunk(tail.replays.keySet(), ROW_COLUMNS + "WHERE \"id\" IN ",
+                resultSet -> tail.rows.put(resultSet.getLong(1), Replay.read(resultSet, false)));
+            // Entries of deleted projects stay in the timeline
+            tail.replays.keySet().retainAll(tail.rows.keySet());
+        }
+        return tail;
+    }
+
+    private void forEachChunk(Collection<Long> ids, String sqlPrefix, RowCallbackHandler handler) {
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = all.subList(from, Math.min(all.size(), from + CHUNK_SIZE));
+            StringBuilder sql = new StringBuilder(sqlPrefix).append("(");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            jdbcTemplate.query(sql.append(")").toString(), handler, chunk.toArray());
+        }
+    }
+
+    private void writeCheckpoints(Tail tail) {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(tail.replays.size());
+        for (Map.Entry<Long, Replay> entry : tail.replays.entrySet()) {
+            Replay replay = entry.getValue();
+            rows.add(new Object[] {entry.getKey(), replay.lastEntryId, replay.currentState().name(),
+                replay.lastStateChange, replay.devTimeMs, replay.waitTimeMs, now});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_CHECKPOINT, rows);
+        }
+    }
+
+    // The timeline keeps the state it records; totals the row has beyond it
+    // are appended as adjustments, and a running timer the timeline never
+    // saw start gets its start entry. So does a session the row restarted
+    // later than the timeline's start: its totals already cover the time
+    // before, so the row keeps its timestamp rather than counting that time
+    // again. Brings the replay in line with what the entries will say.
+    private List<TimelineEntry> openingEntries(Long projectId, Replay replay, Replay row) {
+        List<TimelineEntry> entries = new ArrayList<>(3);
+        LocalDateTime now = LocalDateTime.now();
+        boolean restarted = replay.state == row.state && !Objects.equals(replay.lastStateChange, row.lastStateChange);
+        if ((replay.state == null || restarted) && row.state != Project.TimerState.STOPPED
+            && row.lastStateChange != null) {
+            String eventType = row.state == Project.TimerState.DEV_ACTIVE ? "START_DEV" : "START_WAIT";
+            entries.add(openingEntry(projectId, eventType, toDateTime(row.lastStateChange), null));
+            replay.state = row.state;
+            replay.lastStateChange = row.lastStateChange;
+        }
+        if (row.devTimeMs != replay.devTimeMs) {
+            entries.add(openingEntry(projectId, ADJUST_DEV, now, row.devTimeMs - replay.devTimeMs));
+            replay.devTimeMs = row.devTimeMs;
+        }
+        if (row.waitTimeMs != replay.waitTimeMs) {
+            entries.add(openingEntry(projectId, ADJUST_WAIT, now, row.waitTimeMs - replay.waitTimeMs));
+            replay.waitTimeMs = row.waitTimeMs;
+        }
+        return entries;
+    }
+
+    private static TimelineEntry openingEntry(Long projectId, String eventType, LocalDateTime timestamp,
+                                              Long durationMs) {
+        TimelineEntry entry = new TimelineEntry(null, eventType, timestamp, OPENING_DESCRIPTION, OPENING_USERNAME);
+        entry.setProjectId(projectId);
+        entry.setDurationMs(durationMs);
+        return entry;
+    }
+
+    // Must run inside a read transaction
+    private ChunkResult verifyChunk(List<Long> projectIds) {
+        Object[] range = {projectIds.get(0), projectIds.get(projectIds.size() - 1)};
+        Map<Long, Replay> rows = new TreeMap<>();
+        jdbcTemplate.query(ROW_COLUMNS + "WHERE \"id\" BETWEEN ? AND ?",
+            (RowCallbackHandler) resultSet -> rows.put(resultSet.getLong(1), Replay.read(resultSet, false)), range);
+        Map<Long, Verification> verifications = new TreeMap<>();
+        for (Long projectId : rows.keySet()) {
+            verifications.put(projectId, new Verification(null));
+        }
+        jdbcTemplate.query(CHECKPOINT_COLUMNS + "WHERE \"project_id\" BETWEEN ? AND ?", resultSet -> {
+            Long projectId = resultSet.getLong(1);
+            if (verifications.containsKey(projectId)) {
+                verifications.put(projectId, new Verification(Replay.read(resultSet, true)));
+            }
+        }, range);
+
+        ChunkResult result = new ChunkResult();
+        result.projects = rows.size();
+        timelineArchive.scan(projectIds, Long.MIN_VALUE, Long.MAX_VALUE, entry -> {
+            Verification verification = verifications.get(entry.getProjectId());
+            if (verification != null) {
+                verification.apply(entry.getId(), entry.getEventType(), TimelineSegmentFile.millis(entry),
+                    entry.getDurationMs() != null ? entry.getDurationMs() : 0L);
+                result.entries++;
+            }
+            return true;
+        });
+        jdbcTemplate.query(SELECT_PROJECT_ENTRIES, resultSet -> {
+            Verification verification = verifications.get(resultSet.getLong(2));
+            if (verification != null) {
+                long id = resultSet.getLong(1);
+                long duration = resultSet.getLong(5);
+                verification.apply(id, resultSet.getString(3), resultSet.getLong(4),
+                    resultSet.wasNull() ? 0L : duration);
+                result.entries++;
+            }
+        }, range);
+
+        for (Map.Entry<Long, Verification> entry : verifications.entrySet()) {
+            Verification verification = entry.getValue();
+            compare(entry.getKey(), "row", verification.replay, rows.get(entry.getKey()), true, result.mismatches);
+            if (verification.checkpoint != null) {
+                compare(entry.getKey(), "checkpoint", verification.atCheckpoint, verification.checkpoint, false,
+                    result.mismatches);
+            }
+        }
+        return result;
+    }
+
+    // Rows keep their own lastStateChange until the timeline has one
+    private static int compare(Long projectId, String source, Replay expected, Replay actual, boolean row,
+                               List<LedgerReport.Mismatch> mismatches) {
+        int before = mismatches.size();
+        if (expected.currentState() != actual.currentState()) {
+            mismatches.add(new LedgerReport.Mismatch(projectId, source, "currentState",
+                expected.currentState(), actual.currentState()));
+        }
+        if ((!row || expected.lastStateChange != null)
+            && !Objects.equals(expected.lastStateChange, actual.lastStateChange)) {
+            mismatches.add(new LedgerReport.Mismatch(projectId, source, "lastStateChange",
+                toDateTime(expected.lastStateChange), toDateTime(actual.lastStateChange)));
+        }
+        if (expected.devTimeMs != actual.devTimeMs) {
+            mismatches.add(new LedgerReport.Mismatch(projectId, source, "devTimeMs",
+                expected.devTimeMs, actual.devTimeMs));
+        }
+        if (expected.waitTimeMs != actual.waitTimeMs) {
+            mismatches.add(new LedgerReport.Mismatch(projectId, source, "waitTimeMs",
+                expected.waitTimeMs, actual.waitTimeMs));
+        }
+        return mismatches.size() - before;
+    }
+
+    private static LocalDateTime toDateTime(Long millis) {
+        return millis != null ? new Timestamp(millis).toLocalDateTime() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,119 @@
+package com.devclock.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: deadlines are kept in {@code size} buckets by their
+ * tick, so scheduling and cancelling are O(1) and each tick only looks at the
+ * deadlines that hashed to its bucket. A deadline more than one revolution
+ * away stays in its bucket until a visit finds it due.
+ */
+final class TimingWheel<T> {
+
+    static final class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final long deadlineMillis;
+        private final T payload;
+        private int bucket = -1;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(TimingWheel<T> wheel, long deadlineMillis, T payload) {
+            this.wheel = wheel;
+            this.deadlineMillis = deadlineMillis;
+            this.payload = payload;
+        }
+
+        long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * Removes the deadline if it has neither fired nor been cancelled.
+         */
+        void cancel() {
+            wheel.cancel(this);
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private long nextTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int size, long startMillis) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = (Timeout<T>[]) new Timeout[size];
+        this.mask = size - 1;
+        this.nextTick = startMillis / tickMillis;
+    }
+
+    synchronized Timeout<T> schedule(long deadlineMillis, T payload) {
+        Timeout<T> timeout = new Timeout<>(this, deadlineMillis, payload);
+        // Deadlines already past go into the next bucket to be visited
+        long tick = Math.max(deadlineMillis / tickMillis, nextTick);
+        timeout.bucket = (int) (tick & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Removes and returns the payloads of every deadline at or before
+     * {@code nowMillis}.
+     */
+    synchronized List<T> expire(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long nowTick = nowMillis / tickMillis;
+        // After a stall of a revolution or more, every bucket is visited once
+        long ticks = Math.min(nowTick - nextTick + 1, buckets.length);
+        for (long i = 0; i < ticks; i++) {
+            Timeout<T> timeout = buckets[(int) ((nextTick + i) & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadlineMillis <= nowMillis) {
+                    unlink(timeout);
+                    expired.add(timeout.payload);
+                }
+                timeout = next;
+            }
+        }
+        nextTick = Math.max(nextTick, nowTick + 1);
+        return expired;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized void cancel(Timeout<T> timeout) {
+        if (timeout.bucket >= 0) {
+            unlink(timeout);
+        }
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.bucket = -1;
+        timeout.previous = null;
+        timeout.next = null;
+        size--;
+    }
+}
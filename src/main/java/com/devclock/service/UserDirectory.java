@@ -0,0 +1,166 @@
+package com.devclock.service;
+
+import com.devclock.model.User;
+import com.devclock.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory view of {@code users.json} keyed by username. The file is read
+ * at startup and again whenever a {@link WatchService} reports a change to
+ * it; each reload is written through to the users table before the new
+ * snapshot is published, so lookups never touch the filesystem or the
+ * database.
+ */
+@Service
+public class UserDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDirectory.class);
+
+    // Editors often save in several steps; wait for the burst to settle
+    private static final long RELOAD_SETTLE_MS = 200;
+
+    private final UserFileService userFileService;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path usersFile;
+
+    private volatile Map<String, User> usersByName = Collections.emptyMap();
+    private volatile List<UserFileService.UserConfig> userConfigs = Collections.emptyList();
+
+    private final Thread watcherThread = new Thread(this::watch, "user-directory-watcher");
+    private WatchService watchService;
+
+    @Autowired
+    public UserDirectory(UserFileService userFileService,
+                         UserRepository userRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.users.file.path:users.json}") String usersFilePath) {
+        this.userFileService = userFileService;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.usersFile = Paths.get(usersFilePath).toAbsolutePath();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        reload();
+
+        watchService = FileSystems.getDefault().newWatchService();
+        usersFile.getParent().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Returns the user with this username, or null if {@code users.json}
+     * does not list them. The returned instance is shared and must not be
+     * modified.
+     */
+    public User find(String username) {
+        return username != null ? usersByName.get(username) : null;
+    }
+
+    public List<UserFileService.UserConfig> getUserConfigs() {
+        return userConfigs;
+    }
+
+    synchronized void reload() {
+        List<UserFileService.UserConfig> configs = userFileService.readUsers();
+        Map<String, User> synced = transactionTemplate.execute(status -> syncToDatabase(configs));
+        usersByName = Collections.unmodifiableMap(synced);
+        userConfigs = Collections.unmodifiableList(configs);
+        log.info("Loaded {} users from {}", synced.size(), usersFile);
+    }
+
+    private Map<String, User> syncToDatabase(List<UserFileService.UserConfig> configs) {
+        Map<String, User> users = new HashMap<>();
+        for (UserFileService.UserConfig config : configs) {
+            User.Role role = User.Role.valueOf(config.role);
+            Optional<User> existing = userRepository.findByUsername(config.username);
+
+            User user;
+            if (!existing.isPresent()) {
+                user = userRepository.save(new User(config.username, role));
+            } else if (existing.get().getRole() != role) {
+                user = existing.get();
+                user.setRole(role);
+                user = userRepository.save(user);
+            } else {
+                user = existing.get();
+            }
+            users.put(user.getUsername(), user);
+        }
+        return users;
+    }
+
+    private void watch() {
+        Path fileName = usersFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || fileName.equals(event.context());
+                }
+                key.reset();
+
+                if (changed) {
+                    drainSettlingEvents();
+                    reloadSafely();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void drainSettlingEvents() throws InterruptedException {
+        WatchKey key;
+        while ((key = watchService.poll(RELOAD_SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    private void reloadSafely() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("Failed to reload {}, keeping the previous {} users", usersFile, usersByName.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
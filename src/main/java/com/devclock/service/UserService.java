@@ -2,12 +2,17 @@ package com.devclock.service;
 
 import com.devclock.model.User;
 import com.devclock.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
@@ -17,16 +22,31 @@ public class UserService {
     private UserRepository userRepository;
     
     @Autowired
-    private UserFileService userFileService;
+    private UserDirectory userDirectory;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer authenticateTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        authenticateTimer = Timer.builder("devclock.auth")
+            .description("Time to resolve the X-Username header to a user")
+            .register(meterRegistry);
+    }
+
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> getUserByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -53,24 +73,14 @@ public class UserService {
         throw new IllegalArgumentException("User '" + username + "' not found. Please contact administrator.");
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public User authenticateUser(String username) {
-        User fileUser = userFileService.findUserByUsername(username);
-        if (fileUser == null) {
+        long start = System.nanoTime();
+        User user = userDirectory.find(username);
+        authenticateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (user == null) {
             throw new IllegalArgumentException("Invalid username. User not found in system.");
         }
-        
-        Optional<User> dbUser = getUserByUsername(username);
-        if (!dbUser.isPresent()) {
-            User newUser = new User(fileUser.getUsername(), fileUser.getRole());
-            return userRepository.save(newUser);
-        }
-        
-        User existingUser = dbUser.get();
-        if (!existingUser.getRole().equals(fileUser.getRole())) {
-            existingUser.setRole(fileUser.getRole());
-            return userRepository.save(existingUser);
-        }
-        
-        return existingUser;
+        return user;
     }
 }
@@ -0,0 +1,107 @@
+-- Schema as Hibernate created it from the entities up to this release.
+-- Databases created by an earlier release already have these tables, so
+-- every statement is a no-op there.
+
+CREATE TABLE IF NOT EXISTS "users" (
+    "id" integer,
+    "created_at" datetime not null,
+    "role" varchar(255) not null,
+    "username" varchar(255) not null,
+    primary key ("id"),
+    unique ("username")
+);
+
+CREATE TABLE IF NOT EXISTS "projects" (
+    "id" integer,
+    "assigned_to_all" boolean not null,
+    "assigned_user_username" varchar(255),
+    "created_at" datetime not null,
+    "current_state" varchar(255),
+    "description" varchar(1000) not null,
+    "dev_time_seconds" bigint not null,
+    "last_state_change" datetime,
+    "name" varchar(255) not null,
+    "updated_at" datetime,
+    "wait_time_seconds" bigint not null,
+    primary key ("id")
+);
+CREATE INDEX IF NOT EXISTS idx_projects_assigned_to_all ON "projects" ("assigned_to_all", "created_at");
+CREATE INDEX IF NOT EXISTS idx_projects_assigned_user ON "projects" ("assigned_user_username", "created_at");
+
+CREATE TABLE IF NOT EXISTS "timeline_entries" (
+    "id" integer,
+    "description" varchar(255),
+    "duration_seconds" bigint,
+    "event_type" varchar(255) not null,
+    "project_id" bigint,
+    "timestamp" datetime not null,
+    "username" varchar(255),
+    primary key ("id")
+);
+CREATE INDEX IF NOT EXISTS idx_timeline_project_timestamp ON "timeline_entries" ("project_id", "timestamp", "id");
+CREATE INDEX IF NOT EXISTS idx_timeline_timestamp ON "timeline_entries" ("timestamp", "id");
+
+CREATE TABLE IF NOT EXISTS "timeline_segments" (
+    "id" integer,
+    "created_at" datetime not null,
+    "entry_count" integer not null,
+    "file_name" varchar(255) not null,
+    "first_id" bigint not null,
+    "first_timestamp" datetime not null,
+    "last_id" bigint not null,
+    "last_timestamp" datetime not null,
+    "project_id" bigint not null,
+    "size_bytes" bigint not null,
+    primary key ("id"),
+    unique ("file_name")
+);
+CREATE INDEX IF NOT EXISTS idx_timeline_segments_project ON "timeline_segments" ("project_id", "first_timestamp");
+
+CREATE TABLE IF NOT EXISTS "daily_rollups" (
+    "id" integer,
+    "category" varchar(255) not null,
+    "day" date not null,
+    "project_id" bigint not null,
+    "seconds" bigint not null,
+    "username" varchar(255) not null,
+    primary key ("id"),
+    unique ("day", "project_id", "username", "category")
+);
+CREATE INDEX IF NOT EXISTS idx_daily_rollups_project_day ON "daily_rollups" ("project_id", "day");
+
+CREATE TABLE IF NOT EXISTS "ledger_checkpoints" (
+    "project_id" bigint not null,
+    "created_at" datetime not null,
+    "current_state" varchar(255) not null,
+    "dev_time_seconds" bigint not null,
+    "last_entry_id" bigint not null,
+    "last_state_change" datetime,
+    "wait_time_seconds" bigint not null,
+    primary key ("project_id")
+);
+CREATE INDEX IF NOT EXISTS idx_ledger_checkpoints_last_entry ON "ledger_checkpoints" ("last_entry_id");
+
+CREATE TABLE IF NOT EXISTS "cluster_members" (
+    "node_id" varchar(255) not null,
+    "heartbeat_at" datetime not null,
+    "url" varchar(255) not null,
+    primary key ("node_id")
+);
+
+CREATE TABLE IF NOT EXISTS "cluster_messages" (
+    "id" integer,
+    "created_at" datetime not null,
+    "node_id" varchar(255) not null,
+    "payload" varchar(100000) not null,
+    primary key ("id")
+);
+
+CREATE TABLE IF NOT EXISTS "project_leases" (
+    "project_id" bigint not null,
+    "expires_at" datetime not null,
+    "node_id" varchar(255) not null,
+    "token" bigint not null,
+    primary key ("project_id")
+);
+CREATE INDEX IF NOT EXISTS idx_project_leases_expires ON "project_leases" ("expires_at");
+CREATE INDEX IF NOT EXISTS idx_project_leases_node ON "project_leases" ("node_id");
@@ -0,0 +1,17 @@
+-- Timer totals, session durations and daily rollups are kept in
+-- milliseconds instead of whole seconds. Existing values are converted in
+-- place; archived timeline segments are converted as they are read.
+
+ALTER TABLE "projects" RENAME COLUMN "dev_time_seconds" TO "dev_time_ms";
+ALTER TABLE "projects" RENAME COLUMN "wait_time_seconds" TO "wait_time_ms";
+UPDATE "projects" SET "dev_time_ms" = "dev_time_ms" * 1000, "wait_time_ms" = "wait_time_ms" * 1000;
+
+ALTER TABLE "ledger_checkpoints" RENAME COLUMN "dev_time_seconds" TO "dev_time_ms";
+ALTER TABLE "ledger_checkpoints" RENAME COLUMN "wait_time_seconds" TO "wait_time_ms";
+UPDATE "ledger_checkpoints" SET "dev_time_ms" = "dev_time_ms" * 1000, "wait_time_ms" = "wait_time_ms" * 1000;
+
+ALTER TABLE "timeline_entries" RENAME COLUMN "duration_seconds" TO "duration_ms";
+UPDATE "timeline_entries" SET "duration_ms" = "duration_ms" * 1000 WHERE "duration_ms" IS NOT NULL;
+
+ALTER TABLE "daily_rollups" RENAME COLUMN "seconds" TO "milliseconds";
+UPDATE "daily_rollups" SET "milliseconds" = "milliseconds" * 1000;
@@ -0,0 +1,9 @@
+-- Projects created before timelines were recorded get the creation entry
+-- the timeline view used to add the first time it was opened, so reading a
+-- timeline never writes to it.
+
+INSERT INTO "timeline_entries" ("project_id", "event_type", "timestamp", "description", "username")
+SELECT p."id", 'PROJECT_CREATED', p."created_at", 'Project created', 'system'
+FROM "projects" p
+WHERE NOT EXISTS (SELECT 1 FROM "timeline_entries" t WHERE t."project_id" = p."id")
+  AND NOT EXISTS (SELECT 1 FROM "timeline_segments" s WHERE s."project_id" = p."id");
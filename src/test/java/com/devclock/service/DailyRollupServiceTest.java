@@ -0,0 +1,134 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import com.devclock.repository.DailyRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DailyRollupServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void keepsASessionWithinOneDayInOneRow() {
+        Map<LocalDate, Long> days = record("UTC", stopDev(LocalDateTime.of(2026, 3, 10, 17, 0), hours(2)));
+
+        assertThat(days).containsExactly(entry(LocalDate.of(2026, 3, 10), hours(2)));
+    }
+
+    @Test
+    void splitsASessionAtMidnight() {
+        Map<LocalDate, Long> days = record("UTC", stopDev(LocalDateTime.of(2026, 3, 10, 0, 30), minutes(90)));
+
+        assertThat(days).containsExactly(
+            entry(LocalDate.of(2026, 3, 9), minutes(60)),
+            entry(LocalDate.of(2026, 3, 10), minutes(30)));
+    }
+
+    @Test
+    void creditsEveryDayOfASessionSpanningSeveralMidnights() {
+        Map<LocalDate, Long> days = record("UTC",
+            stopDev(LocalDateTime.of(2026, 3, 12, 6, 0, 0, 250_000_000), hours(54) + 250));
+
+        assertThat(days).containsExactly(
+            entry(LocalDate.of(2026, 3, 10), hours(24)),
+            entry(LocalDate.of(2026, 3, 11), hours(24)),
+            entry(LocalDate.of(2026, 3, 12), hours(6) + 250));
+    }
+
+    @Test
+    void splitsAtMidnightWhenClocksWentBackDuringTheSession() {
+        // 03:00 CEST became 02:00 CET on 2026-10-25, so 22:00 to 04:00 took
+        // seven hours, five of them after midnight
+        Map<LocalDate, Long> days = record("Europe/Berlin",
+            stopDev(LocalDateTime.of(2026, 10, 25, 4, 0), hours(7)));
+
+        assertThat(days).containsExactly(
+            entry(LocalDate.of(2026, 10, 24), hours(2)),
+            entry(LocalDate.of(2026, 10, 25), hours(5)));
+    }
+
+    @Test
+    void splitsAtMidnightWhenClocksWentForwardDuringTheSession() {
+        // 02:00 CET became 03:00 CEST on 2026-03-29, so 22:00 to 04:00 took
+        // five hours, three of them after midnight
+        Map<LocalDate, Long> days = record("Europe/Berlin",
+            stopDev(LocalDateTime.of(2026, 3, 29, 4, 0), hours(5)));
+
+        assertThat(days).containsExactly(
+            entry(LocalDate.of(2026, 3, 28), hours(2)),
+            entry(LocalDate.of(2026, 3, 29), hours(3)));
+    }
+
+    @Test
+    void ignoresEntriesThatEndNoSession() {
+        TimelineEntry start = new TimelineEntry(null, "START_DEV", LocalDateTime.of(2026, 3, 10, 9, 0),
+            "Development work started", "developer1");
+        start.setProjectId(1L);
+
+        service(ZoneId.of("UTC")).record(Collections.singletonList(start));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    // Returns the milliseconds credited per day, in day order
+    @SuppressWarnings("unchecked")
+    private Map<LocalDate, Long> record(String zone, TimelineEntry entry) {
+        service(ZoneId.of(zone)).record(Collections.singletonList(entry));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        Map<LocalDate, Long> days = new TreeMap<>();
+        for (Object[] row : rows.getValue()) {
+            assertThat(row[1]).isEqualTo(entry.getProjectId());
+            assertThat(row[2]).isEqualTo(entry.getUsername());
+            assertThat(row[3]).isEqualTo("DEV");
+            days.merge(new Date((Long) row[0]).toLocalDate(), (Long) row[4], Long::sum);
+        }
+        return days;
+    }
+
+    private DailyRollupService service(ZoneId zone) {
+        return new DailyRollupService(jdbcTemplate, mock(DailyRollupRepository.class),
+            mock(PlatformTransactionManager.class), zone);
+    }
+
+    private static TimelineEntry stopDev(LocalDateTime end, long durationMs) {
+        TimelineEntry entry = new TimelineEntry(null, "STOP_DEV", end, "Development work ended", "developer1");
+        entry.setProjectId(1L);
+        entry.setDurationMs(durationMs);
+        return entry;
+    }
+
+    private static Map.Entry<LocalDate, Long> entry(LocalDate day, long millis) {
+        return new AbstractMap.SimpleEntry<>(day, millis);
+    }
+
+    private static long hours(long hours) {
+        return TimeUnit.HOURS.toMillis(hours);
+    }
+
+    private static long minutes(long minutes) {
+        return TimeUnit.MINUTES.toMillis(minutes);
+    }
+}
@@ -0,0 +1,135 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimelineSegmentFileTest {
+
+    private static final long PROJECT_ID = 7L;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 5, 9, 0, 0, 125_000_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesWhatWasEncoded() throws IOException {
+        // More than one block, with repeated and missing strings and a
+        // negative adjustment
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String description = i % 5 == 0 ? null : "note " + i % 4;
+            String username = i % 7 == 0 ? null : "developer" + i % 2;
+            LocalDateTime timestamp = START.plusSeconds(i * 37L);
+            if (i % 3 == 0) {
+                entries.add(entry(10L + i * 2, "START_DEV", timestamp, description, username, null));
+            } else if (i % 3 == 1) {
+                entries.add(entry(10L + i * 2, "STOP_DEV", timestamp, description, username, 1_234L * i));
+            } else {
+                entries.add(entry(10L + i * 2, "ADJUST_DEV", timestamp, description, username, -500L));
+            }
+        }
+
+        TimelineSegmentFile segment = TimelineSegmentFile.open(
+            write(TimelineSegmentFile.encode(PROJECT_ID, entries)));
+
+        assertSameEntries(readAll(segment, Long.MIN_VALUE), entries);
+    }
+
+    @Test
+    void cursorStartsAtTheFirstEntryFromTheGivenTime() throws IOException {
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(entry(i + 1L, "NOTE", START.plusMinutes(i), null, null, null));
+        }
+        TimelineSegmentFile segment = TimelineSegmentFile.open(
+            write(TimelineSegmentFile.encode(PROJECT_ID, entries)));
+
+        List<TimelineEntry> fromMiddle = readAll(segment, TimelineSegmentFile.millis(entries.get(700)));
+
+        assertSameEntries(fromMiddle, entries.subList(700, entries.size()));
+    }
+
+    @Test
+    void scalesDurationsOfVersionOneFilesToMilliseconds() throws IOException {
+        List<TimelineEntry> entries = new ArrayList<>();
+        entries.add(entry(1L, "START_WAIT", START, "Customer wait started", "developer1", null));
+        entries.add(entry(2L, "STOP_WAIT", START.plusSeconds(90), "Customer wait ended", "developer1", 90L));
+        entries.add(entry(3L, "ADJUST_WAIT", START.plusSeconds(95), null, "system", -4L));
+
+        TimelineSegmentFile segment = TimelineSegmentFile.open(write(asVersion(1,
+            TimelineSegmentFile.encode(PROJECT_ID, entries))));
+
+        List<TimelineEntry> read = readAll(segment, Long.MIN_VALUE);
+        assertThat(read).extracting(TimelineEntry::getDurationMs).containsExactly(null, 90_000L, -4_000L);
+        assertThat(read).extracting(TimelineEntry::getId).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void rejectsACorruptedFile() throws IOException {
+        byte[] bytes = TimelineSegmentFile.encode(PROJECT_ID,
+            Collections.singletonList(entry(1L, "NOTE", START, null, null, null)));
+        bytes[bytes.length / 2] ^= 0x40;
+        Path file = write(bytes);
+
+        assertThatThrownBy(() -> TimelineSegmentFile.open(file))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Checksum mismatch");
+    }
+
+    private static TimelineEntry entry(long id, String eventType, LocalDateTime timestamp, String description,
+                                       String username, Long durationMs) {
+        TimelineEntry entry = new TimelineEntry(null, eventType, timestamp, description, username);
+        entry.setId(id);
+        entry.setProjectId(PROJECT_ID);
+        entry.setDurationMs(durationMs);
+        return entry;
+    }
+
+    // Rewrites the version field and the checksum that covers it
+    private static byte[] asVersion(int version, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(4, version);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        buffer.putInt(bytes.length - 4, (int) crc.getValue());
+        return bytes;
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        return Files.write(directory.resolve("segment-" + System.nanoTime() + ".seg"), bytes);
+    }
+
+    private static List<TimelineEntry> readAll(TimelineSegmentFile segment, long fromMillis) {
+        List<TimelineEntry> read = new ArrayList<>();
+        TimelineSegmentFile.Cursor cursor = segment.cursor(fromMillis);
+        while (cursor.advance()) {
+            read.add(cursor.current());
+        }
+        return read;
+    }
+
+    private static void assertSameEntries(List<TimelineEntry> actual, List<TimelineEntry> expected) {
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i))
+                .usingRecursiveComparison()
+                .comparingOnlyFields("id", "projectId", "eventType", "timestamp", "description", "username",
+                    "durationMs")
+                .isEqualTo(expected.get(i));
+        }
+    }
+}
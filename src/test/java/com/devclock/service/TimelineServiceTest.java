@@ -0,0 +1,233 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import com.devclock.repository.TimelineSegmentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TimelineServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 9, 0);
+    private static final LocalDateTime ARCHIVED = LocalDateTime.of(2020, 1, 1, 9, 0);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TimelineArchive timelineArchive;
+    private TimelineService timelineService;
+
+    @BeforeEach
+    void openDatabase() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + directory.resolve("devclockdb.sqlite"), true);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        ClusterCoordinator clusterCoordinator = new ClusterCoordinator(jdbcTemplate, transactionManager, false,
+            "test", "http://localhost", 6000);
+        timelineArchive = new TimelineArchive(jdbcTemplate, mock(TimelineSegmentRepository.class),
+            clusterCoordinator, transactionManager, new SimpleMeterRegistry(), false,
+            directory.resolve("archive").toString(), 1000, 60, 100_000);
+        timelineService = new TimelineService(jdbcTemplate, transactionManager, timelineArchive, objectMapper);
+        insertProject(1L, "Alpha");
+        insertProject(2L, "Beta");
+    }
+
+    @AfterEach
+    void closeDatabase() throws InterruptedException {
+        timelineArchive.shutdown();
+        dataSource.destroy();
+    }
+
+    @Test
+    void pagesThroughTheTimelineInTimestampOrder() {
+        // Inserted newest first, so id order is the reverse of time order,
+        // with three entries sharing the timestamp a page boundary falls on
+        List<Long> expected = new ArrayList<>();
+        for (int i = 19; i >= 0; i--) {
+            int minute = i >= 9 && i <= 11 ? 9 : i;
+            insertEntry(2L, "NOTE", START.plusMinutes(minute));
+            expected.add(0, insertEntry(1L, "NOTE", START.plusMinutes(minute)));
+        }
+        expected.subList(9, 12).sort(null);
+
+        TimelineService.Page first = page(null, 10);
+        TimelineService.Page second = page(first.getNextCursor(), 10);
+
+        TimelineEntry last = first.getEntries().get(9);
+        assertThat(first.getNextCursor()).isEqualTo(millis(last.getTimestamp()) + ":" + last.getId());
+        assertThat(second.getNextCursor()).as("a full last page has no next cursor").isNull();
+        assertThat(ids(first.getEntries(), second.getEntries())).isEqualTo(expected);
+    }
+
+    @Test
+    void limitsPagesToTheRequestedRange() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(insertEntry(1L, "NOTE", START.plusHours(i)));
+        }
+
+        TimelineService.Page page = timelineService.page(
+            new TimelineService.Query(1L, null, START.plusHours(1), START.plusHours(4)), 10);
+
+        assertThat(ids(page.getEntries())).isEqualTo(ids.subList(1, 4));
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void rejectsMalformedCursorsAndLimits() {
+        for (String cursor : Arrays.asList("", "12", ":12", "12:", "abc:1", "1:abc")) {
+            assertThatThrownBy(() -> page(cursor, 10))
+                .as(cursor)
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> page(null, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> page(null, TimelineService.MAX_PAGE_SIZE + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimelineService.Query(1L, null, START, START.minusSeconds(1)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void mergesArchivedEntriesWithTheTableAcrossPages() throws IOException {
+        List<Long> archived = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            archived.add(insertEntry(1L, "NOTE", ARCHIVED.plusMinutes(i)));
+        }
+        List<Long> recent = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            recent.add(insertEntry(1L, "NOTE", START.plusMinutes(i)));
+        }
+        assertThat(timelineArchive.archiveOldEntries()).isEqualTo(6);
+        // Appended after the archive run but dated between archived entries,
+        // like an auto-stop at its deadline
+        Long backdated = insertEntry(1L, "TIMER_STOPPED", ARCHIVED.plusMinutes(2).plusSeconds(30));
+
+        List<Long> expected = new ArrayList<>(archived.subList(0, 3));
+        expected.add(backdated);
+        expected.addAll(archived.subList(3, 6));
+        expected.addAll(recent);
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            TimelineService.Page page = page(cursor, 3);
+            paged.addAll(ids(page.getEntries()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat(paged).isEqualTo(expected);
+
+        assertThat(streamedIds(new TimelineService.Query(1L, null, null, null))).isEqualTo(expected);
+        String afterBackdated = millis(ARCHIVED.plusMinutes(2).plusSeconds(30)) + ":" + backdated;
+        assertThat(streamedIds(new TimelineService.Query(1L, afterBackdated, null, null)))
+            .isEqualTo(expected.subList(4, expected.size()));
+    }
+
+    @Test
+    void exportsEveryProjectInTimestampOrder() throws IOException {
+        Long archived = insertEntry(2L, "NOTE", ARCHIVED);
+        Long first = insertEntry(1L, "STOP_DEV", START, 90_000L);
+        Long second = insertEntry(2L, "NOTE", START.plusMinutes(1));
+        Long third = insertEntry(1L, "NOTE", START.plusMinutes(2));
+        assertThat(timelineArchive.archiveOldEntries()).isEqualTo(1);
+
+        String csv = write(timelineService.export(null, null, null, TimelineService.ExportFormat.CSV));
+        String[] lines = csv.split("\r\n");
+        assertThat(lines[0]).isEqualTo("id,projectId,projectName,eventType,timestamp,description,durationSeconds,"
+            + "username");
+        assertThat(lines).hasSize(5);
+        assertThat(lines[1]).startsWith(archived + ",2,Beta,NOTE,2020-01-01T09:00:00,");
+        assertThat(lines[2]).startsWith(first + ",1,Alpha,STOP_DEV,2026-03-10T09:00:00,").contains(",90,");
+        assertThat(lines[3]).startsWith(second + ",2,Beta,");
+        assertThat(lines[4]).startsWith(third + ",1,Alpha,");
+
+        String ndjson = write(timelineService.export(Arrays.asList(2L), START, null,
+            TimelineService.ExportFormat.NDJSON));
+        List<Long> exported = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            JsonNode row = objectMapper.readTree(line);
+            assertThat(row.get("projectName").asText()).isEqualTo("Beta");
+            exported.add(row.get("id").asLong());
+        }
+        assertThat(exported).containsExactly(second);
+    }
+
+    private TimelineService.Page page(String after, int limit) {
+        return timelineService.page(new TimelineService.Query(1L, after, null, null), limit);
+    }
+
+    private List<Long> streamedIds(TimelineService.Query query) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode entry : objectMapper.readTree(write(timelineService.stream(query)))) {
+            ids.add(entry.get("id").asLong());
+        }
+        return ids;
+    }
+
+    private static String write(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        body.writeTo(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @SafeVarargs
+    private static List<Long> ids(List<TimelineEntry>... pages) {
+        List<Long> ids = new ArrayList<>();
+        for (List<TimelineEntry> page : pages) {
+            for (TimelineEntry entry : page) {
+                ids.add(entry.getId());
+            }
+        }
+        return ids;
+    }
+
+    private void insertProject(Long id, String name) {
+        jdbcTemplate.update("INSERT INTO \"projects\" (\"id\", \"assigned_to_all\", \"created_at\", " +
+                "\"current_state\", \"description\", \"dev_time_ms\", \"name\", \"wait_time_ms\") " +
+                "VALUES (?, 1, ?, 'STOPPED', 'Timeline test', 0, ?, 0)",
+            id, Timestamp.valueOf(ARCHIVED.minusDays(1)), name);
+    }
+
+    private Long insertEntry(Long projectId, String eventType, LocalDateTime timestamp) {
+        return insertEntry(projectId, eventType, timestamp, null);
+    }
+
+    private Long insertEntry(Long projectId, String eventType, LocalDateTime timestamp, Long durationMs) {
+        jdbcTemplate.update("INSERT INTO \"timeline_entries\" (\"project_id\", \"event_type\", \"timestamp\", " +
+            "\"description\", \"duration_ms\", \"username\") VALUES (?, ?, ?, 'Entry', ?, 'developer1')",
+            projectId, eventType, Timestamp.valueOf(timestamp), durationMs);
+        return jdbcTemplate.queryForObject("SELECT MAX(\"id\") FROM \"timeline_entries\"", Long.class);
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime.truncatedTo(ChronoUnit.MILLIS)).getTime();
+    }
+}
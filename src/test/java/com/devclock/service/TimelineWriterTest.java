@@ -0,0 +1,154 @@
+package com.devclock.service;
+
+import com.devclock.model.TimelineEntry;
+import com.devclock.repository.DailyRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TimelineWriterTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 10, 9, 0);
+
+    @TempDir
+    Path directory;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TimelineWriter timelineWriter;
+
+    @BeforeEach
+    void openDatabase() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + directory.resolve("devclockdb.sqlite"), true);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        meterRegistry = new SimpleMeterRegistry();
+        timelineWriter = new TimelineWriter(jdbcTemplate,
+            new DailyRollupService(jdbcTemplate, mock(DailyRollupRepository.class), transactionManager),
+            transactionManager, 100, 256, 1000, 2, meterRegistry);
+        for (long id = 1; id <= 3; id++) {
+            jdbcTemplate.update("INSERT INTO \"projects\" (\"id\", \"assigned_to_all\", \"created_at\", " +
+                "\"current_state\", \"description\", \"dev_time_ms\", \"name\", \"wait_time_ms\") " +
+                "VALUES (?, 1, ?, 'STOPPED', 'Writer test', 0, ?, 0)", id, Timestamp.valueOf(NOW), "p" + id);
+        }
+    }
+
+    @AfterEach
+    void closeDatabase() throws InterruptedException {
+        timelineWriter.shutdown();
+        dataSource.destroy();
+    }
+
+    @Test
+    void commitsRowsAndEntriesOfQueuedWritesInOneTransaction() throws Exception {
+        // Queued before the writer thread starts, so they form one batch
+        RowWrite[] writes = {new RowWrite(1L, 60_000L, "STOP_DEV"), new RowWrite(2L, 30_000L, "STOP_DEV"),
+            new RowWrite(3L, 15_000L, "STOP_DEV")};
+        for (RowWrite write : writes) {
+            timelineWriter.reserve();
+            timelineWriter.submit(write);
+        }
+
+        timelineWriter.start();
+        for (RowWrite write : writes) {
+            write.done.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(meterRegistry.get("devclock.timeline.write").timer().count()).isEqualTo(1);
+        assertThat(devTimes()).containsExactly(60_000L, 30_000L, 15_000L);
+        assertThat(entryCount()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(\"milliseconds\") FROM \"daily_rollups\"", Long.class))
+            .isEqualTo(105_000L);
+    }
+
+    @Test
+    void keepsNeitherRowsNorEntriesOfABatchThatFails() throws Exception {
+        // An entry without an event type violates NOT NULL, after its row
+        // was already updated
+        RowWrite good = new RowWrite(1L, 60_000L, "STOP_DEV");
+        RowWrite bad = new RowWrite(2L, 30_000L, null);
+        timelineWriter.reserve();
+        timelineWriter.submit(good);
+        timelineWriter.reserve();
+        timelineWriter.submit(bad);
+
+        timelineWriter.start();
+        assertThat(bad.done).failsWithin(10, TimeUnit.SECONDS);
+        assertThat(good.done).failsWithin(0, TimeUnit.SECONDS);
+        assertThat(bad.attempts.get()).isEqualTo(2);
+        assertThat(devTimes()).containsExactly(0L, 0L, 0L);
+        assertThat(entryCount()).isZero();
+
+        // The writer carries on with the writes queued after it
+        RowWrite later = new RowWrite(3L, 15_000L, "STOP_DEV");
+        timelineWriter.reserve();
+        timelineWriter.submit(later);
+        later.done.get(5, TimeUnit.SECONDS);
+        assertThat(devTimes()).containsExactly(0L, 0L, 15_000L);
+        assertThat(entryCount()).isEqualTo(1);
+    }
+
+    private List<Long> devTimes() {
+        return jdbcTemplate.queryForList("SELECT \"dev_time_ms\" FROM \"projects\" ORDER BY \"id\"", Long.class);
+    }
+
+    private int entryCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"timeline_entries\"", Integer.class);
+    }
+
+    // A project row and the stop entry that explains it, the way TimerEngine
+    // queues a toggle
+    private class RowWrite implements TimelineWriter.Write {
+        private final Long projectId;
+        private final long devTimeMs;
+        private final String eventType;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private RowWrite(Long projectId, long devTimeMs, String eventType) {
+            this.projectId = projectId;
+            this.devTimeMs = devTimeMs;
+            this.eventType = eventType;
+        }
+
+        @Override
+        public List<TimelineEntry> apply() {
+            attempts.incrementAndGet();
+            jdbcTemplate.update("UPDATE \"projects\" SET \"dev_time_ms\" = ? WHERE \"id\" = ?", devTimeMs, projectId);
+            TimelineEntry entry = new TimelineEntry(null, eventType, NOW, "Development work ended", "developer1");
+            entry.setProjectId(projectId);
+            entry.setDurationMs(devTimeMs);
+            return Collections.singletonList(entry);
+        }
+
+        @Override
+        public void committed() {
+            done.complete(null);
+        }
+
+        @Override
+        public void failed(RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.devclock.service;
+
+import com.devclock.model.LedgerReport;
+import com.devclock.repository.DailyRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TimerLedgerTest {
+
+    private static final LocalDateTime STARTED = LocalDateTime.of(2026, 3, 10, 9, 0);
+    private static final LocalDateTime RESTARTED = STARTED.plusMinutes(1);
+
+    @TempDir
+    Path directory;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TimelineWriter timelineWriter;
+    private TimerLedger timerLedger;
+
+    @BeforeEach
+    void openDatabase() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + directory.resolve("devclockdb.sqlite"), true);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        timelineWriter = new TimelineWriter(jdbcTemplate,
+            new DailyRollupService(jdbcTemplate, mock(DailyRollupRepository.class), transactionManager),
+            transactionManager, 100, 256, 1000, 1, meterRegistry);
+        ClusterCoordinator clusterCoordinator = new ClusterCoordinator(jdbcTemplate, transactionManager, false,
+            "test", "http://localhost", 6000);
+        timerLedger = new TimerLedger(jdbcTemplate, mock(TimelineArchive.class), timelineWriter, clusterCoordinator,
+            transactionManager, meterRegistry, 0, 1);
+    }
+
+    @AfterEach
+    void closeDatabase() throws InterruptedException {
+        timerLedger.shutdown();
+        timelineWriter.shutdown();
+        dataSource.destroy();
+    }
+
+    @Test
+    void carriesARestartedSessionOverWithoutCountingItTwice() {
+        // The timeline saw the first start; the row was reset and restarted
+        // a minute later with that minute already counted
+        insertProject("DEV_ACTIVE", RESTARTED, 60_000L);
+        insertEntry("START_DEV", STARTED, null);
+
+        timerLedger.rebuild();
+
+        assertRowUnchanged();
+        assertThat(openingEntries()).containsExactly("START_DEV@" + millis(RESTARTED), "ADJUST_DEV=60000");
+        assertThat(timerLedger.verify().getMismatchCount()).isZero();
+    }
+
+    @Test
+    void opensASessionTheTimelineNeverSawStart() {
+        insertProject("DEV_ACTIVE", RESTARTED, 60_000L);
+
+        timerLedger.rebuild();
+
+        assertRowUnchanged();
+        assertThat(openingEntries()).containsExactly("START_DEV@" + millis(RESTARTED), "ADJUST_DEV=60000");
+        assertThat(timerLedger.verify().getMismatchCount()).isZero();
+    }
+
+    @Test
+    void leavesAProjectThatMatchesItsTimelineAlone() {
+        insertProject("DEV_ACTIVE", STARTED, 0L);
+        insertEntry("START_DEV", STARTED, null);
+
+        timerLedger.rebuild();
+
+        assertThat(openingEntries()).isEmpty();
+        LedgerReport report = timerLedger.verify();
+        assertThat(report.getProjectsChecked()).isEqualTo(1);
+        assertThat(report.getMismatchCount()).isZero();
+    }
+
+    private void insertProject(String state, LocalDateTime lastStateChange, long devTimeMs) {
+        jdbcTemplate.update("INSERT INTO \"projects\" (\"id\", \"assigned_to_all\", \"created_at\", " +
+                "\"current_state\", \"description\", \"dev_time_ms\", \"last_state_change\", \"name\", " +
+                "\"wait_time_ms\") VALUES (1, 1, ?, ?, 'Ledger test', ?, ?, 'Ledger', 0)",
+            Timestamp.valueOf(STARTED.minusDays(1)), state, devTimeMs, Timestamp.valueOf(lastStateChange));
+    }
+
+    private void insertEntry(String eventType, LocalDateTime timestamp, Long durationMs) {
+        jdbcTemplate.update("INSERT INTO \"timeline_entries\" (\"project_id\", \"event_type\", \"timestamp\", " +
+            "\"duration_ms\", \"username\") VALUES (1, ?, ?, ?, 'developer1')",
+            eventType, Timestamp.valueOf(timestamp), durationMs);
+    }
+
+    private void assertRowUnchanged() {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT \"current_state\", \"last_state_change\", " +
+            "\"dev_time_ms\" FROM \"projects\" WHERE \"id\" = 1");
+        assertThat(row.get("current_state")).isEqualTo("DEV_ACTIVE");
+        assertThat(((Number) row.get("last_state_change")).longValue()).isEqualTo(millis(RESTARTED));
+        assertThat(((Number) row.get("dev_time_ms")).longValue()).isEqualTo(60_000L);
+    }
+
+    // The entries the rebuild added, as type@timestamp for starts and
+    // type=duration for adjustments
+    private List<String> openingEntries() {
+        return jdbcTemplate.query("SELECT \"event_type\", \"timestamp\", \"duration_ms\" FROM \"timeline_entries\" " +
+                "WHERE \"username\" <> 'developer1' ORDER BY \"id\"",
+            (resultSet, rowNum) -> resultSet.getString(1).startsWith("ADJUST")
+                ? resultSet.getString(1) + "=" + resultSet.getLong(3)
+                : resultSet.getString(1) + "@" + resultSet.getLong(2));
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime).getTime();
+    }
+}